@@ -0,0 +1,105 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.AddressExtAdapter;
+import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of one model, with the generated adapters.
+ * The BSON benchmarks compare going through a {@link Document} (and {@link DocumentCodec})
+ * with using the adapter as a codec directly.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdapterBenchmark {
+
+	private final DocumentCodec documentCodec = new DocumentCodec();
+
+	private Person person;
+	private Document personDoc;
+	private byte[] personBson;
+
+	private AddressExt address;
+	private Document addressDoc;
+
+	@Setup
+	public void setup() {
+		person = SampleData.createPerson(1);
+		personDoc = PersonAdapter.INSTANCE.model2doc(person);
+		personBson = SampleData.encode(PersonAdapter.INSTANCE, person);
+
+		address = SampleData.createAddressExt(1);
+		addressDoc = AddressExtAdapter.INSTANCE.model2doc(address);
+	}
+
+	@Benchmark
+	public Document personModel2doc() {
+		return PersonAdapter.INSTANCE.model2doc(person);
+	}
+
+	@Benchmark
+	public Person personDoc2model() {
+		return PersonAdapter.INSTANCE.doc2model(personDoc);
+	}
+
+	@Benchmark
+	public Document addressExtModel2doc() {
+		return AddressExtAdapter.INSTANCE.model2doc(address);
+	}
+
+	@Benchmark
+	public AddressExt addressExtDoc2model() {
+		return AddressExtAdapter.INSTANCE.doc2model(addressDoc);
+	}
+
+	@Benchmark
+	public byte[] personEncodeViaDocument() {
+		return SampleData.encode(documentCodec, PersonAdapter.INSTANCE.model2doc(person));
+	}
+
+	@Benchmark
+	public Person personDecodeViaDocument() {
+		return PersonAdapter.INSTANCE.doc2model(SampleData.decode(documentCodec, personBson));
+	}
+
+	@Benchmark
+	public byte[] personEncodeWithCodec() {
+		return SampleData.encode(PersonAdapter.INSTANCE, person);
+	}
+
+	@Benchmark
+	public Person personDecodeWithCodec() {
+		return SampleData.decode(PersonAdapter.INSTANCE, personBson);
+	}
+
+	@Benchmark
+	public Person personRoundTripWithCodec() {
+		return SampleData.decode(PersonAdapter.INSTANCE, SampleData.encode(PersonAdapter.INSTANCE, person));
+	}
+
+	/** Changes a field of a decoded person: the addresses are decoded and encoded again */
+	@Benchmark
+	public byte[] personReadModifyWriteWithCodec() {
+		final Person decoded = SampleData.decode(PersonAdapter.INSTANCE, personBson);
+		decoded.setName("Changed");
+		return SampleData.encode(PersonAdapter.INSTANCE, decoded);
+	}
+
+	/** Same with the raw adapters: the addresses are not decoded, and their BSON is copied (see AdapterGenerator#setGenerateRaw) */
+	@Benchmark
+	public byte[] rawPersonReadModifyWriteWithCodec() {
+		final Person decoded = SampleData.decode(com.codethen.mongo.adapter.benchmark.raw.PersonAdapter.INSTANCE, personBson);
+		decoded.setName("Changed");
+		return SampleData.encode(com.codethen.mongo.adapter.benchmark.raw.PersonAdapter.INSTANCE, decoded);
+	}
+}
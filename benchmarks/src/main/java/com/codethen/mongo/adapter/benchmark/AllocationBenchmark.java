@@ -0,0 +1,67 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.generator.AdapterGenerator;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per document of the default adapters (sample package) and the ones generated with
+ * {@link AdapterGenerator#setAllocationMinimal} (lean package, see {@link GenerateBenchmarkAdapters}).
+ * Compare gc.alloc.rate.norm (bytes per operation) reported by the GC profiler (see {@link BenchmarkRunner}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationBenchmark {
+
+	private Person person;
+	private Document personDoc;
+	private Person target;
+	private Person leanTarget;
+
+	@Setup
+	public void setup() {
+		person = SampleData.createPerson(1);
+		personDoc = PersonAdapter.INSTANCE.model2doc(person);
+		target = PersonAdapter.INSTANCE.doc2model(personDoc);
+		leanTarget = com.codethen.mongo.adapter.benchmark.lean.PersonAdapter.INSTANCE.doc2model(personDoc);
+	}
+
+	@Benchmark
+	public Document defaultModel2doc() {
+		return PersonAdapter.INSTANCE.model2doc(person);
+	}
+
+	@Benchmark
+	public Document leanModel2doc() {
+		return com.codethen.mongo.adapter.benchmark.lean.PersonAdapter.INSTANCE.model2doc(person);
+	}
+
+	@Benchmark
+	public Person defaultDoc2model() {
+		return PersonAdapter.INSTANCE.doc2model(personDoc);
+	}
+
+	@Benchmark
+	public Person leanDoc2model() {
+		return com.codethen.mongo.adapter.benchmark.lean.PersonAdapter.INSTANCE.doc2model(personDoc);
+	}
+
+	/** Refills the same model (see doc2model(doc, target)), so only the converted values are allocated */
+	@Benchmark
+	public Person defaultDoc2modelRefill() {
+		return PersonAdapter.INSTANCE.doc2model(personDoc, target);
+	}
+
+	@Benchmark
+	public Person leanDoc2modelRefill() {
+		return com.codethen.mongo.adapter.benchmark.lean.PersonAdapter.INSTANCE.doc2model(personDoc, leanTarget);
+	}
+}
@@ -0,0 +1,77 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
+import com.google.gson.Gson;
+import com.mongodb.MongoClientSettings;
+import org.bson.codecs.Codec;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+/**
+ * Baselines to compare the generated adapters with:
+ * the driver's reflective {@link PojoCodecProvider} and {@link Gson} (JSON instead of BSON).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ComparisonBenchmark {
+
+	private final Gson gson = new Gson();
+
+	private Codec<Person> pojoCodec;
+
+	private Person person;
+	private byte[] pojoBson;
+	private byte[] adapterBson;
+	private String json;
+
+	@Setup
+	public void setup() {
+		pojoCodec = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+			fromProviders(PojoCodecProvider.builder().automatic(true).build())).get(Person.class);
+
+		person = SampleData.createPerson(1);
+		pojoBson = SampleData.encode(pojoCodec, person);
+		adapterBson = SampleData.encode(PersonAdapter.INSTANCE, person);
+		json = gson.toJson(person);
+	}
+
+	@Benchmark
+	public byte[] adapterEncode() {
+		return SampleData.encode(PersonAdapter.INSTANCE, person);
+	}
+
+	@Benchmark
+	public Person adapterDecode() {
+		return SampleData.decode(PersonAdapter.INSTANCE, adapterBson);
+	}
+
+	@Benchmark
+	public byte[] pojoEncode() {
+		return SampleData.encode(pojoCodec, person);
+	}
+
+	@Benchmark
+	public Person pojoDecode() {
+		return SampleData.decode(pojoCodec, pojoBson);
+	}
+
+	@Benchmark
+	public String gsonEncode() {
+		return gson.toJson(person);
+	}
+
+	@Benchmark
+	public Person gsonDecode() {
+		return gson.fromJson(json, Person.class);
+	}
+}
@@ -0,0 +1,52 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.dump.AdapterDump;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a dump file of people with {@link AdapterDump}, decoding its segments sequentially or in parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DumpBenchmark {
+
+	@Param({"100000"})
+	private int people;
+
+	/** Number of segments decoded in parallel (see AdapterDump.setSegments) */
+	@Param({"1", "4"})
+	private int segments;
+
+	private AdapterDump<Person> dump;
+	private Path file;
+
+	@Setup
+	public void setup() throws IOException {
+		dump = new AdapterDump<>(PersonAdapter.INSTANCE);
+		dump.setSegments(segments);
+		file = Files.createTempFile("people", ".bson");
+		dump.write(file, SampleData.createPeople(people).stream());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public List<Person> read() {
+		return dump.read(file);
+	}
+}
@@ -0,0 +1,87 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.generator.AdapterGenerator;
+import com.codethen.mongo.adapter.generator.AdapterGeneratorContext;
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.EnumStrategy;
+import com.codethen.mongo.adapter.generator.PersonAdapterGenerator;
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
+import com.codethen.util.MapBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Generates the adapters of the benchmark packages: the same adapters as the sample ones (see AdapterGeneratorExample),
+ * but generated with {@link AdapterGenerator#setAllocationMinimal} ("lean" package),
+ * or with {@link AdapterGenerator#setGenerateRaw} for the addresses ("raw" package).
+ * Run it from the benchmarks folder.
+ */
+public class GenerateBenchmarkAdapters {
+
+	public static void main(String[] args) {
+		generate("lean", com.codethen.mongo.adapter.benchmark.lean.AddressAdapter.class, true, false);
+		generate("raw", com.codethen.mongo.adapter.benchmark.raw.AddressAdapter.class, false, true);
+	}
+
+	/** The address adapter of the package is the superclass of the AddressExt one, so it must be already generated */
+	private static void generate(String subpackage, Class<? extends BaseCodecAdapter> addressAdapter,
+		boolean allocationMinimal, boolean rawAddresses) {
+
+		final String packageName = GenerateBenchmarkAdapters.class.getPackage().getName() + "." + subpackage;
+		final AdapterGeneratorContext context = new AdapterGeneratorContext("src/main/java", packageName);
+
+		context.createAdapter(new AdapterGenerator(), a -> {
+			a.setModelClass(Address.class);
+			a.setGenerateCodec(true);
+			a.setAllocationMinimal(allocationMinimal);
+			a.setGenerateRaw(rawAddresses);
+			a.setFieldNames(MapBuilder.<String, String>linked()
+				.put("street", "str")
+				.put("number", "num")
+				.build());
+		});
+
+		context.createAdapter(new AdapterGenerator(), a -> {
+			a.setModelClass(AddressExt.class);
+			a.setAdapterSuperclass(addressAdapter);
+			a.setGenerateCodec(true);
+			a.setAllocationMinimal(allocationMinimal);
+			a.setGenerateRaw(rawAddresses);
+			a.setFieldNames(MapBuilder.<String, String>linked()
+				.put("city", "city")
+				.build());
+		});
+
+		final PersonAdapter.Fields f = PersonAdapter.fields;
+
+		// Same custom mapping of the "number" field as in AdapterGeneratorExample
+		context.createAdapter(new PersonAdapterGenerator(), a -> {
+			a.setModelClass(Person.class);
+			a.setGenerateCodec(true);
+			a.setAllocationMinimal(allocationMinimal);
+			a.setObjectIdDocFields(Arrays.asList(f.id, f.friendIds));
+			a.setEnumStrategy("gender", EnumStrategy.CODE);
+			a.setEnumCodes(Person.Gender.class, MapBuilder.<Person.Gender, String>linked()
+				.put(Person.Gender.MALE, "M")
+				.put(Person.Gender.FEMALE, "F")
+				.build());
+			a.setEnumStrategy("preferredGenders", EnumStrategy.ORDINAL);
+			a.setFieldNames(MapBuilder.<String, String>linked()
+				.put("id", f.id)
+				.put("friendIds", f.friendIds)
+				.put("name", f.name)
+				.put("nicknames", f.nicknames)
+				.put("age", f.age)
+				.put("number", f.number)
+				.put("famous", f.famous)
+				.put("gender", f.gender)
+				.put("preferredGenders", f.preferredGenders)
+				.put("address", f.address)
+				.put("otherAddresses", f.otherAddresses)
+				.build());
+		});
+	}
+}
@@ -0,0 +1,49 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.generator.BaseAdapter;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of lists of models, with the list overloads of {@link BaseAdapter}, sequentially and in parallel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListConversionBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	private int listSize;
+
+	/** Whether lists of at least 1000 elements are converted in parallel (see BaseAdapter.setParallelThreshold) */
+	@Param({"false", "true"})
+	private boolean parallel;
+
+	private List<Person> people;
+	private List<Document> peopleDocs;
+
+	@Setup
+	public void setup() {
+		PersonAdapter.INSTANCE.setParallelThreshold(parallel ? 1000 : Integer.MAX_VALUE);
+		people = SampleData.createPeople(listSize);
+		peopleDocs = PersonAdapter.INSTANCE.model2doc(people);
+	}
+
+	@Benchmark
+	public List<Document> peopleModel2doc() {
+		return PersonAdapter.INSTANCE.model2doc(people);
+	}
+
+	@Benchmark
+	public List<Person> peopleDoc2model() {
+		return PersonAdapter.INSTANCE.doc2model(peopleDocs);
+	}
+}
@@ -0,0 +1,63 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.util.ObjectIds;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a list of ids (like a big friendIds list) between hex strings and {@link ObjectId},
+ * with the driver and with {@link ObjectIds} (used by string2id and id2string of the adapters).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectIdBenchmark {
+
+	@Param({"1000"})
+	private int listSize;
+
+	private List<String> hexes;
+	private List<ObjectId> ids;
+
+	@Setup
+	public void setup() {
+		ids = new ArrayList<>();
+		hexes = new ArrayList<>();
+		for (int i = 0; i < listSize; i++) {
+			final ObjectId id = new ObjectId();
+			ids.add(id);
+			hexes.add(id.toHexString());
+		}
+	}
+
+	@Benchmark
+	public List<ObjectId> driverParse() {
+		final List<ObjectId> result = new ArrayList<>(hexes.size());
+		for (String hex : hexes) result.add(new ObjectId(hex));
+		return result;
+	}
+
+	@Benchmark
+	public List<ObjectId> objectIdsParse() {
+		return ObjectIds.parse(hexes);
+	}
+
+	@Benchmark
+	public List<String> driverToHex() {
+		final List<String> result = new ArrayList<>(ids.size());
+		for (ObjectId id : ids) result.add(id.toHexString());
+		return result;
+	}
+
+	@Benchmark
+	public List<String> objectIdsToHex() {
+		return ObjectIds.toHex(ids);
+	}
+}
@@ -0,0 +1,75 @@
+package com.codethen.mongo.adapter.benchmark;
+
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sample models and BSON helpers shared by the benchmarks.
+ */
+public class SampleData {
+
+	public static final EncoderContext encoderContext = EncoderContext.builder().build();
+	public static final DecoderContext decoderContext = DecoderContext.builder().build();
+
+	public static Person createPerson(int i) {
+
+		final AddressExt mainAddress = createAddressExt(i);
+
+		final Address otherAddress = new Address();
+		otherAddress.setStreet("Simple street " + i);
+		otherAddress.setNumber(321);
+
+		final Person person = new Person();
+		person.setId(new ObjectId().toString());
+		person.setName("John " + i);
+		person.setFriendIds(Arrays.asList(new ObjectId().toString(), new ObjectId().toString()));
+		person.setAddress(mainAddress);
+		person.setAge(20 + i % 50);
+		person.setNumber(String.valueOf(i));
+		person.setFamous(i % 2 == 0);
+		person.setGender(Person.Gender.MALE);
+		person.setPreferredGenders(Arrays.asList(Person.Gender.MALE, Person.Gender.FEMALE));
+		person.setNicknames(Arrays.asList("Joni", "Gin"));
+		person.setOtherAddresses(Arrays.asList(otherAddress, otherAddress));
+		return person;
+	}
+
+	public static AddressExt createAddressExt(int i) {
+		final AddressExt address = new AddressExt();
+		address.setStreet("Extended street " + i);
+		address.setNumber(i);
+		address.setCity("Barcelona");
+		return address;
+	}
+
+	public static List<Person> createPeople(int size) {
+		final List<Person> people = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			people.add(createPerson(i));
+		}
+		return people;
+	}
+
+	public static <T> byte[] encode(Codec<T> codec, T value) {
+		final BasicOutputBuffer buffer = new BasicOutputBuffer();
+		codec.encode(new BsonBinaryWriter(buffer), value, encoderContext);
+		return Arrays.copyOf(buffer.getInternalBuffer(), buffer.getPosition());
+	}
+
+	public static <T> T decode(Codec<T> codec, byte[] bytes) {
+		return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), decoderContext);
+	}
+}
@@ -0,0 +1,317 @@
+package com.codethen.mongo.adapter.benchmark.lean;
+
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import java.lang.Boolean;
+import java.lang.Class;
+import java.lang.IllegalArgumentException;
+import java.lang.Integer;
+import java.lang.Object;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+@SuppressWarnings("unchecked")
+public class PersonAdapter<T extends Person> extends BaseCodecAdapter<T> {
+  public static final Fields fields = new Fields();
+
+  public static final PersonAdapter<Person> INSTANCE = new PersonAdapter<>();
+
+  private static final Person.Gender[] GENDER_VALUES = Person.Gender.values();
+
+  @Override
+  public T newModelInstance() {
+    return (T) new Person();
+  }
+
+  @Override
+  public Document model2doc(T model) {
+    final Document doc = super.model2doc(model);
+    if (doc == null) return null;
+    appendTo(doc, fields.id, string2id(model.getId()));
+    appendTo(doc, fields.friendIds, friendIds2doc(model.getFriendIds()));
+    appendTo(doc, fields.name, model.getName());
+    appendTo(doc, fields.nicknames, model.getNicknames());
+    appendTo(doc, fields.age, model.getAge());
+    appendTo(doc, fields.number, Integer.parseInt(model.getNumber()));
+    appendTo(doc, fields.famous, model.isFamous());
+    appendTo(doc, fields.gender, gender2code(model.getGender()));
+    appendTo(doc, fields.preferredGenders, gender2ordinal(model.getPreferredGenders()));
+    appendTo(doc, fields.address, AddressExtAdapter.INSTANCE.model2doc(model.getAddress()));
+    appendTo(doc, fields.otherAddresses, otherAddresses2doc(model.getOtherAddresses()));
+    return doc;
+  }
+
+  @Override
+  public T doc2model(Document doc) {
+    final T model = super.doc2model(doc);
+    if (model == null) return null;
+    model.setId(id2string((ObjectId) doc.get(fields.id)));
+    model.setFriendIds(friendIds2model((List<ObjectId>) doc.get(fields.friendIds)));
+    model.setName((String) doc.get(fields.name));
+    model.setNicknames((List<String>) doc.get(fields.nicknames));
+    model.setAge((int) doc.get(fields.age));
+    model.setNumber(String.valueOf(doc.get(fields.number)));
+    model.setFamous((boolean) doc.get(fields.famous));
+    model.setGender(code2gender(doc.get(fields.gender)));
+    model.setPreferredGenders(ordinal2gender((List<Object>) doc.get(fields.preferredGenders)));
+    model.setAddress(AddressExtAdapter.INSTANCE.doc2model((Document) doc.get(fields.address)));
+    model.setOtherAddresses(otherAddresses2model((List<Document>) doc.get(fields.otherAddresses)));
+    return model;
+  }
+
+  @Override
+  public T doc2model(Document doc, T target) {
+    final T model = refillTarget(doc, target);
+    if (model == null) return null;
+    model.setId(id2string((ObjectId) doc.get(fields.id)));
+    model.setFriendIds(refillList((List<ObjectId>) doc.get(fields.friendIds), model.getFriendIds(), (value, previous) -> id2string(value)));
+    model.setName((String) doc.get(fields.name));
+    model.setNicknames((List<String>) doc.get(fields.nicknames));
+    model.setAge((int) doc.get(fields.age));
+    model.setNumber(String.valueOf(doc.get(fields.number)));
+    model.setFamous((boolean) doc.get(fields.famous));
+    model.setGender(code2gender(doc.get(fields.gender)));
+    model.setPreferredGenders(refillList((List<Object>) doc.get(fields.preferredGenders), model.getPreferredGenders(), (value, previous) -> ordinal2gender(value)));
+    model.setAddress(AddressExtAdapter.INSTANCE.doc2model((Document) doc.get(fields.address), model.getAddress()));
+    model.setOtherAddresses(AddressAdapter.INSTANCE.doc2model((List<Document>) doc.get(fields.otherAddresses), model.getOtherAddresses()));
+    return model;
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, T before, T after) {
+    super.appendUpdate(set, unset, prefix, before, after);
+    if (!Objects.equals(before.getId(), after.getId())) {
+      updateValue(set, unset, prefix, fields.id, string2id(after.getId()));
+    }
+    if (!Objects.equals(before.getFriendIds(), after.getFriendIds())) {
+      updateValue(set, unset, prefix, fields.friendIds, friendIds2doc(after.getFriendIds()));
+    }
+    if (!Objects.equals(before.getName(), after.getName())) {
+      updateValue(set, unset, prefix, fields.name, after.getName());
+    }
+    if (!Objects.equals(before.getNicknames(), after.getNicknames())) {
+      updateValue(set, unset, prefix, fields.nicknames, after.getNicknames());
+    }
+    if (before.getAge() != after.getAge()) {
+      updateValue(set, unset, prefix, fields.age, after.getAge());
+    }
+    if (!Objects.equals(before.getNumber(), after.getNumber())) {
+      updateValue(set, unset, prefix, fields.number, Integer.parseInt(after.getNumber()));
+    }
+    if (before.isFamous() != after.isFamous()) {
+      updateValue(set, unset, prefix, fields.famous, after.isFamous());
+    }
+    if (!Objects.equals(before.getGender(), after.getGender())) {
+      updateValue(set, unset, prefix, fields.gender, gender2code(after.getGender()));
+    }
+    if (!Objects.equals(before.getPreferredGenders(), after.getPreferredGenders())) {
+      updateValue(set, unset, prefix, fields.preferredGenders, gender2ordinal(after.getPreferredGenders()));
+    }
+    updateModel(set, unset, prefix, fields.address, AddressExtAdapter.INSTANCE, before.getAddress(), after.getAddress());
+    updateModels(set, unset, prefix, fields.otherAddresses, AddressAdapter.INSTANCE, before.getOtherAddresses(), after.getOtherAddresses());
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    super.validate(doc, prefix, violations);
+    validateValue(violations, prefix, fields.id, doc.get(fields.id), ObjectId.class, () -> id2string((ObjectId) doc.get(fields.id)));
+    validateItems(violations, prefix, fields.friendIds, doc.get(fields.friendIds), ObjectId.class);
+    validateValue(violations, prefix, fields.name, doc.get(fields.name), String.class, () -> (String) doc.get(fields.name));
+    validateItems(violations, prefix, fields.nicknames, doc.get(fields.nicknames), String.class);
+    if (validatePresent(violations, prefix, fields.age, doc.get(fields.age))) validateValue(violations, prefix, fields.age, doc.get(fields.age), Integer.class, () -> (int) doc.get(fields.age));
+    validateValue(violations, prefix, fields.number, doc.get(fields.number), Integer.class, () -> String.valueOf(doc.get(fields.number)));
+    if (validatePresent(violations, prefix, fields.famous, doc.get(fields.famous))) validateValue(violations, prefix, fields.famous, doc.get(fields.famous), Boolean.class, () -> (boolean) doc.get(fields.famous));
+    validateValue(violations, prefix, fields.gender, doc.get(fields.gender), String.class, () -> code2gender(doc.get(fields.gender)));
+    validateItems(violations, prefix, fields.preferredGenders, doc.get(fields.preferredGenders), Integer.class, item -> ordinal2gender(item));
+    validateModel(violations, prefix, fields.address, doc.get(fields.address), AddressExtAdapter.INSTANCE);
+    validateModels(violations, prefix, fields.otherAddresses, doc.get(fields.otherAddresses), AddressAdapter.INSTANCE);
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return (Class<T>) Person.class;
+  }
+
+  @Override
+  public void encodeFields(BsonWriter writer, T model, EncoderContext ctx) {
+    super.encodeFields(writer, model, ctx);
+    encodeObjectId(writer, fields.id, model.getId());
+    encodeObjectIds(writer, fields.friendIds, model.getFriendIds());
+    encodeField(writer, fields.name, model.getName());
+    encodeList(writer, fields.nicknames, model.getNicknames(), ctx);
+    encodeField(writer, fields.age, model.getAge());
+    encodeField(writer, fields.number, Integer.parseInt(model.getNumber()));
+    encodeField(writer, fields.famous, model.isFamous());
+    encodeField(writer, fields.gender, gender2code(model.getGender()));
+    encodeEnums(writer, fields.preferredGenders, model.getPreferredGenders(), PersonAdapter::gender2ordinal);
+    encodeModel(writer, fields.address, AddressExtAdapter.INSTANCE, model.getAddress(), ctx);
+    encodeModels(writer, fields.otherAddresses, AddressAdapter.INSTANCE, model.getOtherAddresses(), ctx);
+  }
+
+  @Override
+  public boolean decodeField(BsonReader reader, String docField, T model, DecoderContext ctx) {
+    switch (docField) {
+      case "_id":
+        model.setId(readObjectId(reader));
+        return true;
+      case "friends":
+        model.setFriendIds(readObjectIds(reader));
+        return true;
+      case "name":
+        model.setName(reader.readString());
+        return true;
+      case "nicks":
+        model.setNicknames(readList(reader, ctx));
+        return true;
+      case "age":
+        model.setAge(reader.readInt32());
+        return true;
+      case "num":
+        model.setNumber(String.valueOf(reader.readInt32()));
+        return true;
+      case "fam":
+        model.setFamous(reader.readBoolean());
+        return true;
+      case "gen":
+        model.setGender(code2gender(reader.readString()));
+        return true;
+      case "prefs":
+        model.setPreferredGenders(readEnums(reader, PersonAdapter::ordinal2gender));
+        return true;
+      case "adr":
+        model.setAddress(readModel(reader, AddressExtAdapter.INSTANCE, ctx));
+        return true;
+      case "other":
+        model.setOtherAddresses(readModels(reader, AddressAdapter.INSTANCE, ctx));
+        return true;
+    }
+    return super.decodeField(reader, docField, model, ctx);
+  }
+
+  private List<ObjectId> friendIds2doc(List<String> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    if (size >= getParallelThreshold()) return mapToList(values, value -> string2id(value));
+    final List<ObjectId> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(string2id(values.get(i)));
+    }
+    return result;
+  }
+
+  private static String gender2code(Person.Gender value) {
+    if (value == null) return null;
+    switch (value) {
+      case MALE: return "M";
+      case FEMALE: return "F";
+      default: throw new IllegalArgumentException("Unexpected value: " + value);
+    }
+  }
+
+  private static Integer gender2ordinal(Person.Gender value) {
+    if (value == null) return null;
+    return value.ordinal();
+  }
+
+  private static List<Object> gender2ordinal(List<Person.Gender> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    final List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(gender2ordinal(values.get(i)));
+    }
+    return result;
+  }
+
+  private List<Document> otherAddresses2doc(List<Address> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    if (size >= getParallelThreshold()) return mapToList(values, value -> AddressAdapter.INSTANCE.model2doc(value));
+    final List<Document> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(AddressAdapter.INSTANCE.model2doc(values.get(i)));
+    }
+    return result;
+  }
+
+  private List<String> friendIds2model(List<ObjectId> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    if (size >= getParallelThreshold()) return mapToList(values, value -> id2string(value));
+    final List<String> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(id2string(values.get(i)));
+    }
+    return result;
+  }
+
+  private static Person.Gender code2gender(Object value) {
+    if (value == null) return null;
+    switch ((String) value) {
+      case "M": return Person.Gender.MALE;
+      case "F": return Person.Gender.FEMALE;
+      default: throw new IllegalArgumentException("Unknown Gender code: " + value);
+    }
+  }
+
+  private static Person.Gender ordinal2gender(Object value) {
+    if (value == null) return null;
+    return GENDER_VALUES[(Integer) value];
+  }
+
+  private static List<Person.Gender> ordinal2gender(List<Object> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    final List<Person.Gender> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(ordinal2gender(values.get(i)));
+    }
+    return result;
+  }
+
+  private List<Address> otherAddresses2model(List<Document> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    if (size >= getParallelThreshold()) return mapToList(values, value -> AddressAdapter.INSTANCE.doc2model(value));
+    final List<Address> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(AddressAdapter.INSTANCE.doc2model(values.get(i)));
+    }
+    return result;
+  }
+
+  public static class Fields extends BaseCodecAdapter.Fields {
+    public final String id = "_id";
+
+    public final String friendIds = "friends";
+
+    public final String name = "name";
+
+    public final String nicknames = "nicks";
+
+    public final String age = "age";
+
+    public final String number = "num";
+
+    public final String famous = "fam";
+
+    public final String gender = "gen";
+
+    public final String preferredGenders = "prefs";
+
+    public final String address = "adr";
+
+    public final String otherAddresses = "other";
+  }
+}
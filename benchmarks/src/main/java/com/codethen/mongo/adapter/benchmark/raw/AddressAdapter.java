@@ -0,0 +1,169 @@
+package com.codethen.mongo.adapter.benchmark.raw;
+
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.RawModel;
+import com.codethen.mongo.adapter.generator.sample.Address;
+import java.lang.Class;
+import java.lang.Integer;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.util.List;
+import java.util.Objects;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+@SuppressWarnings("unchecked")
+public class AddressAdapter<T extends Address> extends BaseCodecAdapter<T> {
+  public static final Fields fields = new Fields();
+
+  public static final AddressAdapter<Address> INSTANCE = new AddressAdapter<>();
+
+  @Override
+  public T newModelInstance() {
+    return (T) new Address();
+  }
+
+  @Override
+  public Document model2doc(T model) {
+    final Document doc = super.model2doc(model);
+    if (doc == null) return null;
+    appendTo(doc, fields.street, model.getStreet());
+    appendTo(doc, fields.number, model.getNumber());
+    return doc;
+  }
+
+  @Override
+  public T doc2model(Document doc) {
+    final T model = super.doc2model(doc);
+    if (model == null) return null;
+    model.setStreet((String) doc.get(fields.street));
+    model.setNumber((int) doc.get(fields.number));
+    return model;
+  }
+
+  @Override
+  public T doc2model(Document doc, T target) {
+    final T model = refillTarget(doc, target);
+    if (model == null) return null;
+    model.setStreet((String) doc.get(fields.street));
+    model.setNumber((int) doc.get(fields.number));
+    return model;
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, T before, T after) {
+    super.appendUpdate(set, unset, prefix, before, after);
+    if (!Objects.equals(before.getStreet(), after.getStreet())) {
+      updateValue(set, unset, prefix, fields.street, after.getStreet());
+    }
+    if (before.getNumber() != after.getNumber()) {
+      updateValue(set, unset, prefix, fields.number, after.getNumber());
+    }
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    super.validate(doc, prefix, violations);
+    validateValue(violations, prefix, fields.street, doc.get(fields.street), String.class, () -> (String) doc.get(fields.street));
+    if (validatePresent(violations, prefix, fields.number, doc.get(fields.number))) validateValue(violations, prefix, fields.number, doc.get(fields.number), Integer.class, () -> (int) doc.get(fields.number));
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return (Class<T>) Address.class;
+  }
+
+  @Override
+  public void encodeFields(BsonWriter writer, T model, EncoderContext ctx) {
+    super.encodeFields(writer, model, ctx);
+    encodeField(writer, fields.street, model.getStreet());
+    encodeField(writer, fields.number, model.getNumber());
+  }
+
+  @Override
+  public boolean decodeField(BsonReader reader, String docField, T model, DecoderContext ctx) {
+    switch (docField) {
+      case "str":
+        model.setStreet(reader.readString());
+        return true;
+      case "num":
+        model.setNumber(reader.readInt32());
+        return true;
+    }
+    return super.decodeField(reader, docField, model, ctx);
+  }
+
+  @Override
+  public T decode(BsonReader reader, DecoderContext ctx) {
+    if (getClass() != AddressAdapter.class) return super.decode(reader, ctx);
+    return (T) new Raw(readRawDocument(reader, ctx));
+  }
+
+  public static class Fields extends BaseCodecAdapter.Fields {
+    public final String street = "str";
+
+    public final String number = "num";
+  }
+
+  /**
+   * {@link Address} that keeps the BSON and decodes it on the first call to a getter or setter.
+   * If it didn't change, it's encoded by copying the BSON. It's not thread-safe.
+   */
+  public class Raw extends Address implements RawModel {
+    private final RawBsonDocument raw;
+
+    private boolean loaded;
+
+    private boolean changed;
+
+    Raw(RawBsonDocument raw) {
+      this.raw = raw;
+    }
+
+    @Override
+    public RawBsonDocument getRawDocument() {
+      return changed ? null : raw;
+    }
+
+    /**
+     * Decodes the document, if it wasn't decoded yet (the setters called while decoding are not changes)
+     */
+    public void loadAll() {
+      if (loaded) return;
+      loaded = true;
+      decodeRaw(raw, (T) this);
+      changed = false;
+    }
+
+    @Override
+    public int getNumber() {
+      loadAll();
+      return super.getNumber();
+    }
+
+    @Override
+    public String getStreet() {
+      loadAll();
+      return super.getStreet();
+    }
+
+    @Override
+    public void setNumber(int value) {
+      loadAll();
+      changed = true;
+      super.setNumber(value);
+    }
+
+    @Override
+    public void setStreet(String value) {
+      loadAll();
+      changed = true;
+      super.setStreet(value);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package com.codethen.mongo.adapter.benchmark.raw;
+
+import com.codethen.mongo.adapter.generator.RawModel;
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import java.lang.Class;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.util.List;
+import java.util.Objects;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+@SuppressWarnings("unchecked")
+public class AddressExtAdapter<T extends AddressExt> extends AddressAdapter<T> {
+  public static final Fields fields = new Fields();
+
+  public static final AddressExtAdapter<AddressExt> INSTANCE = new AddressExtAdapter<>();
+
+  @Override
+  public T newModelInstance() {
+    return (T) new AddressExt();
+  }
+
+  @Override
+  public Document model2doc(T model) {
+    final Document doc = super.model2doc(model);
+    if (doc == null) return null;
+    appendTo(doc, fields.city, model.getCity());
+    return doc;
+  }
+
+  @Override
+  public T doc2model(Document doc) {
+    final T model = super.doc2model(doc);
+    if (model == null) return null;
+    model.setCity((String) doc.get(fields.city));
+    return model;
+  }
+
+  @Override
+  public T doc2model(Document doc, T target) {
+    final T model = super.doc2model(doc, target);
+    if (model == null) return null;
+    model.setCity((String) doc.get(fields.city));
+    return model;
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, T before, T after) {
+    super.appendUpdate(set, unset, prefix, before, after);
+    if (!Objects.equals(before.getCity(), after.getCity())) {
+      updateValue(set, unset, prefix, fields.city, after.getCity());
+    }
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    super.validate(doc, prefix, violations);
+    validateValue(violations, prefix, fields.city, doc.get(fields.city), String.class, () -> (String) doc.get(fields.city));
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return (Class<T>) AddressExt.class;
+  }
+
+  @Override
+  public void encodeFields(BsonWriter writer, T model, EncoderContext ctx) {
+    super.encodeFields(writer, model, ctx);
+    encodeField(writer, fields.city, model.getCity());
+  }
+
+  @Override
+  public boolean decodeField(BsonReader reader, String docField, T model, DecoderContext ctx) {
+    switch (docField) {
+      case "city":
+        model.setCity(reader.readString());
+        return true;
+    }
+    return super.decodeField(reader, docField, model, ctx);
+  }
+
+  @Override
+  public T decode(BsonReader reader, DecoderContext ctx) {
+    if (getClass() != AddressExtAdapter.class) return super.decode(reader, ctx);
+    return (T) new Raw(readRawDocument(reader, ctx));
+  }
+
+  public static class Fields extends AddressAdapter.Fields {
+    public final String city = "city";
+  }
+
+  /**
+   * {@link AddressExt} that keeps the BSON and decodes it on the first call to a getter or setter.
+   * If it didn't change, it's encoded by copying the BSON. It's not thread-safe.
+   */
+  public class Raw extends AddressExt implements RawModel {
+    private final RawBsonDocument raw;
+
+    private boolean loaded;
+
+    private boolean changed;
+
+    Raw(RawBsonDocument raw) {
+      this.raw = raw;
+    }
+
+    @Override
+    public RawBsonDocument getRawDocument() {
+      return changed ? null : raw;
+    }
+
+    /**
+     * Decodes the document, if it wasn't decoded yet (the setters called while decoding are not changes)
+     */
+    public void loadAll() {
+      if (loaded) return;
+      loaded = true;
+      decodeRaw(raw, (T) this);
+      changed = false;
+    }
+
+    @Override
+    public String getCity() {
+      loadAll();
+      return super.getCity();
+    }
+
+    @Override
+    public int getNumber() {
+      loadAll();
+      return super.getNumber();
+    }
+
+    @Override
+    public String getStreet() {
+      loadAll();
+      return super.getStreet();
+    }
+
+    @Override
+    public void setCity(String value) {
+      loadAll();
+      changed = true;
+      super.setCity(value);
+    }
+
+    @Override
+    public void setNumber(int value) {
+      loadAll();
+      changed = true;
+      super.setNumber(value);
+    }
+
+    @Override
+    public void setStreet(String value) {
+      loadAll();
+      changed = true;
+      super.setStreet(value);
+    }
+  }
+}
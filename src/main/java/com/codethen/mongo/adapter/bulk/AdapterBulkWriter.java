@@ -0,0 +1,191 @@
+package com.codethen.mongo.adapter.bulk;
+
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import com.codethen.util.BsonSize;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Inserts many models in bulk, without holding all of them in memory.
+ *
+ * Models are read in chunks, that are converted in parallel with the adapter, and split into batches
+ * limited by count and by estimated BSON size (see {@link BsonSize}). Batches are submitted concurrently to the {@link BulkWriteTarget}.
+ * There's backpressure: only {@link #setMaxInFlightChunks} chunks (or one per conversion thread, if there are more threads)
+ * are being converted or written at the same time, so reading the models waits until there's room for another chunk.
+ */
+public class AdapterBulkWriter<M> {
+
+	private final BaseDocumentAdapter<M> adapter;
+	private final BulkWriteTarget target;
+
+	private int maxBatchCount = 1000;
+	private int maxBatchBytes = 8 * 1024 * 1024;
+	private int conversionThreads = Runtime.getRuntime().availableProcessors();
+	private int writeConcurrency = 2;
+	private int maxInFlightChunks = 4;
+
+	public AdapterBulkWriter(BaseDocumentAdapter<M> adapter, BulkWriteTarget target) {
+		this.adapter = adapter;
+		this.target = target;
+	}
+
+
+	// --- Getters and setters ---
+
+	public int getMaxBatchCount() {
+		return maxBatchCount;
+	}
+
+	/** Maximum number of documents per batch. It's also the number of models read per chunk. */
+	public void setMaxBatchCount(int maxBatchCount) {
+		this.maxBatchCount = maxBatchCount;
+	}
+
+	public int getMaxBatchBytes() {
+		return maxBatchBytes;
+	}
+
+	/** Maximum estimated BSON size of a batch (a batch has at least one document, even if it's bigger) */
+	public void setMaxBatchBytes(int maxBatchBytes) {
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	public int getConversionThreads() {
+		return conversionThreads;
+	}
+
+	/** Number of threads that convert chunks of models into documents */
+	public void setConversionThreads(int conversionThreads) {
+		this.conversionThreads = conversionThreads;
+	}
+
+	public int getWriteConcurrency() {
+		return writeConcurrency;
+	}
+
+	/** Maximum number of batches submitted to the target at the same time */
+	public void setWriteConcurrency(int writeConcurrency) {
+		this.writeConcurrency = writeConcurrency;
+	}
+
+	public int getMaxInFlightChunks() {
+		return maxInFlightChunks;
+	}
+
+	/**
+	 * Maximum number of chunks being converted or written at the same time (bounds the memory used).
+	 * There are at least {@link #setConversionThreads conversionThreads} chunks, so all the threads can convert one.
+	 */
+	public void setMaxInFlightChunks(int maxInFlightChunks) {
+		this.maxInFlightChunks = maxInFlightChunks;
+	}
+
+
+	// --- Writing ---
+
+	/** Same as {@link #write(Iterator)} */
+	public long write(Stream<? extends M> models) {
+		return write(models.iterator());
+	}
+
+	/**
+	 * Inserts all the models, and returns how many were inserted.
+	 * The models are read in the calling thread, which waits until all the batches are written.
+	 * If a batch fails, no more models are read and the first failure is thrown (other batches may have been written).
+	 */
+	public long write(Iterator<? extends M> models) {
+
+		final ExecutorService converters = Executors.newFixedThreadPool(conversionThreads);
+		final ExecutorService writers = Executors.newFixedThreadPool(writeConcurrency);
+		final int permits = Math.max(maxInFlightChunks, conversionThreads); // So no conversion thread is idle
+		final Semaphore inFlight = new Semaphore(permits);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final AtomicLong written = new AtomicLong();
+
+		try {
+			try {
+				while (failure.get() == null) {
+					inFlight.acquire();
+					boolean submitted = false;
+					try {
+						final List<M> chunk = nextChunk(models);
+						if (chunk.isEmpty()) break;
+						CompletableFuture
+							.supplyAsync(() -> toBatches(chunk), converters)
+							.thenCompose(batches -> CompletableFuture.allOf(batches.stream()
+								.map(batch -> CompletableFuture.runAsync(() -> {
+									target.bulkWrite(batch);
+									written.addAndGet(batch.size());
+								}, writers))
+								.toArray(CompletableFuture[]::new)))
+							.whenComplete((result, e) -> {
+								if (e != null) failure.compareAndSet(null, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+								inFlight.release();
+							});
+						submitted = true;
+					} finally {
+						if (!submitted) inFlight.release(); // The chunk was empty, or reading the models failed
+					}
+				}
+			} finally {
+				inFlight.acquireUninterruptibly(permits); // Wait for the chunks in flight, also if reading the models failed
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing in bulk", e);
+		} finally {
+			converters.shutdownNow();
+			writers.shutdownNow();
+		}
+
+		if (failure.get() != null) {
+			throw new RuntimeException("Problem writing in bulk", failure.get());
+		}
+		return written.get();
+	}
+
+	private List<M> nextChunk(Iterator<? extends M> models) {
+		final List<M> chunk = new ArrayList<>(maxBatchCount);
+		while (chunk.size() < maxBatchCount && models.hasNext()) {
+			chunk.add(models.next());
+		}
+		return chunk;
+	}
+
+	/** Converts the chunk into batches of inserts, limited by count and estimated size */
+	private List<List<WriteModel<Document>>> toBatches(List<M> chunk) {
+
+		final List<List<WriteModel<Document>>> batches = new ArrayList<>();
+		List<WriteModel<Document>> batch = new ArrayList<>();
+		int batchBytes = 0;
+
+		for (M model : chunk) {
+			final Document doc = adapter.model2doc(model);
+			final int docBytes = BsonSize.estimate(doc);
+			if (!batch.isEmpty() && (batch.size() >= maxBatchCount || batchBytes + docBytes > maxBatchBytes)) {
+				batches.add(batch);
+				batch = new ArrayList<>();
+				batchBytes = 0;
+			}
+			batch.add(new InsertOneModel<>(doc));
+			batchBytes += docBytes;
+		}
+
+		if (!batch.isEmpty()) batches.add(batch);
+		return batches;
+	}
+}
@@ -0,0 +1,25 @@
+package com.codethen.mongo.adapter.bulk;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * Where {@link AdapterBulkWriter} submits its batches.
+ * Usually a {@link MongoCollection} (see {@link #of}), but any implementation can be used, e.g. an in-memory one in tests.
+ * Implementations must be thread-safe, since batches are submitted concurrently.
+ */
+@FunctionalInterface
+public interface BulkWriteTarget {
+
+	void bulkWrite(List<WriteModel<Document>> requests);
+
+	/** Target that calls {@link MongoCollection#bulkWrite} with unordered writes */
+	static BulkWriteTarget of(MongoCollection<Document> collection) {
+		final BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+		return requests -> collection.bulkWrite(requests, options);
+	}
+}
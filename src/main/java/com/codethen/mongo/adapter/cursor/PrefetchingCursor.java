@@ -0,0 +1,222 @@
+package com.codethen.mongo.adapter.cursor;
+
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import org.bson.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Iterates the models of a cursor (e.g. a MongoCursor), decoding batches of documents in parallel while the next ones are fetched.
+ *
+ * A reader thread reads batches of {@link #setBatchSize} documents from the cursor, and each batch is decoded in the executor.
+ * Up to {@link #setBatchesInFlight} batches are being decoded or waiting to be consumed, so the reader waits when they are full.
+ * Models are returned in the order of the cursor.
+ *
+ * The cursor is only used by the reader thread, and it's closed (if it's {@link Closeable}) when it ends or when this is closed.
+ * This can be closed from another thread (e.g. to cancel an export), and then a consumer waiting in {@link #hasNext} gets false.
+ */
+public class PrefetchingCursor<M> implements Iterator<M>, Closeable {
+
+	/** Executor used by default: virtual threads if the JVM has them, or a pool of daemon threads otherwise */
+	private static ExecutorService defaultExecutor;
+
+	private final Iterator<Document> docs;
+	private final BaseDocumentAdapter<M> adapter;
+
+	private int batchSize = 100;
+	private int batchesInFlight = 4;
+	private ExecutorService executor;
+
+	/** Decoded batches in cursor order. An empty batch marks the end. */
+	private volatile BlockingQueue<CompletableFuture<List<M>>> batches;
+	private volatile Thread reader;
+	private volatile boolean closed;
+
+	private Iterator<M> current = Collections.emptyIterator();
+	private boolean ended;
+
+	public PrefetchingCursor(Iterator<Document> docs, BaseDocumentAdapter<M> adapter) {
+		this.docs = docs;
+		this.adapter = adapter;
+	}
+
+
+	// --- Getters and setters (before iterating) ---
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/** Number of documents decoded in each task */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchesInFlight() {
+		return batchesInFlight;
+	}
+
+	/** Maximum number of batches read from the cursor and not consumed yet (bounds the memory used) */
+	public void setBatchesInFlight(int batchesInFlight) {
+		this.batchesInFlight = batchesInFlight;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor != null ? executor : getDefaultExecutor();
+	}
+
+	/** Executor that decodes the batches. It's not shut down by this cursor. */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+
+	// --- Iterator ---
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext() && !ended) {
+			if (reader == null) startReader();
+			final List<M> batch = takeBatch();
+			if (batch.isEmpty()) ended = true; else current = batch.iterator();
+		}
+		return current.hasNext();
+	}
+
+	@Override
+	public M next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return current.next();
+	}
+
+	/** Stops reading the cursor. The reader thread closes the cursor. */
+	@Override
+	public void close() {
+		closed = true;
+		ended = true;
+		current = Collections.emptyIterator();
+		if (reader == null) {
+			closeDocs();
+			return;
+		}
+		reader.interrupt();
+		endBatches(); // The reader may be blocked reading the cursor, so it doesn't wake up the consumer right away
+	}
+
+	private void startReader() {
+		if (closed) throw new IllegalStateException("The cursor is closed");
+		batches = new ArrayBlockingQueue<>(batchesInFlight);
+		reader = new Thread(this::readBatches, "prefetching-cursor-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private List<M> takeBatch() {
+		try {
+			final CompletableFuture<List<M>> batch = batches.take();
+			if (closed) return Collections.emptyList(); // Woken up by close, the batch is not needed
+			return batch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new RuntimeException("Interrupted while waiting for the next batch", e);
+		} catch (ExecutionException e) {
+			close();
+			throw new RuntimeException("Problem reading the cursor", e.getCause());
+		}
+	}
+
+	/** Runs in the reader thread */
+	private void readBatches() {
+		final ExecutorService executor = getExecutor();
+		try {
+			while (!closed) {
+				final List<Document> batch = new ArrayList<>(batchSize);
+				while (batch.size() < batchSize && docs.hasNext()) {
+					batch.add(docs.next());
+				}
+				if (batch.isEmpty()) {
+					batches.put(CompletableFuture.completedFuture(Collections.emptyList()));
+					return;
+				}
+				batches.put(CompletableFuture.supplyAsync(() -> adapter.doc2model(batch), executor));
+			}
+		} catch (InterruptedException e) {
+			// Closed while waiting for room in batches
+		} catch (Throwable e) { // Errors too, so the consumer always gets the end of the batches
+			final CompletableFuture<List<M>> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			putUninterruptibly(failed);
+		} finally {
+			if (closed) endBatches(); // The consumer may be waiting, and the reader didn't put the end
+			closeDocs();
+		}
+	}
+
+	/**
+	 * Replaces the batches with the end, so a consumer waiting for a batch gets it once closed.
+	 * Retries if the reader put another batch in between (it stops putting them once it sees it's closed).
+	 */
+	private void endBatches() {
+		do {
+			batches.clear();
+		} while (!batches.offer(CompletableFuture.completedFuture(Collections.emptyList())));
+	}
+
+	/** Puts the batch unless the cursor is closed (then nobody is waiting for it) */
+	private void putUninterruptibly(CompletableFuture<List<M>> batch) {
+		while (!closed) {
+			try {
+				batches.put(batch);
+				return;
+			} catch (InterruptedException e) {
+				// Only the close interrupts the reader, so it ends the loop
+			}
+		}
+	}
+
+	private void closeDocs() {
+		if (docs instanceof Closeable) {
+			try {
+				((Closeable) docs).close();
+			} catch (IOException e) {
+				throw new RuntimeException("Problem closing the cursor", e);
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = newVirtualThreadExecutor();
+			if (defaultExecutor == null) {
+				defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+					final Thread thread = new Thread(runnable, "prefetching-cursor-decoder");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+		return defaultExecutor;
+	}
+
+	/** Executors.newVirtualThreadPerTaskExecutor() if the JVM has virtual threads (Java 21+), null otherwise */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+}
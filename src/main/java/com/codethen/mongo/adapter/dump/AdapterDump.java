@@ -0,0 +1,291 @@
+package com.codethen.mongo.adapter.dump;
+
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes models to a file and reads them back with the adapter, without a server (e.g. for backups, offline jobs or benchmarks).
+ *
+ * The file is a sequence of BSON documents, each one starting with its length (like the .bson files of mongodump,
+ * so they can be read and written by mongodump and mongorestore too). The file is read and written through memory-mapped regions.
+ *
+ * Models are encoded and decoded straight with the adapter if it's a {@link BaseCodecAdapter}, or through a {@link Document} otherwise.
+ * Reading splits the file into {@link #setSegments segments} at document boundaries, and decodes them in parallel.
+ */
+@SuppressWarnings("unchecked")
+public class AdapterDump<M> {
+
+	/** Biggest region mapped at once (a mapped region can't be bigger than 2 GB) */
+	private static final int maxRegionBytes = 1 << 30;
+
+	private static final Codec<Document> documentCodec = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+	private final BaseDocumentAdapter<M> adapter;
+
+	private int segments = Runtime.getRuntime().availableProcessors();
+	private int writeRegionBytes = 64 * 1024 * 1024;
+	private ExecutorService executor = ForkJoinPool.commonPool();
+
+	public AdapterDump(BaseDocumentAdapter<M> adapter) {
+		this.adapter = adapter;
+	}
+
+
+	// --- Getters and setters ---
+
+	public int getSegments() {
+		return segments;
+	}
+
+	/** Number of segments the file is split into when reading, decoded in parallel */
+	public void setSegments(int segments) {
+		this.segments = segments;
+	}
+
+	public int getWriteRegionBytes() {
+		return writeRegionBytes;
+	}
+
+	/**
+	 * Size of the regions mapped while writing: the documents are encoded in memory up to this size, and then copied to a region.
+	 * The documents after the last whole region are written through the channel.
+	 */
+	public void setWriteRegionBytes(int writeRegionBytes) {
+		this.writeRegionBytes = writeRegionBytes;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/** Executor that decodes the segments. It's not shut down by this class. */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+
+	// --- Write ---
+
+	/**
+	 * Writes the models to the file, replacing it. Returns the number of models written.
+	 * If a model can't be encoded (or the stream fails), the file keeps the models before it, and the exception is thrown.
+	 */
+	public long write(Path file, Stream<M> models) {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			final BasicOutputBuffer output = new BasicOutputBuffer();
+			long position = 0;
+			long count = 0;
+
+			final Iterator<M> iterator = models.iterator();
+			while (true) {
+
+				final int recordStart = output.getPosition();
+				try {
+					// The stream can fail in hasNext too, while it looks for the next model
+					if (!iterator.hasNext()) break;
+					encode(output, iterator.next());
+				} catch (RuntimeException e) {
+					// Only the whole documents are written, so the file can still be read
+					output.truncateToPosition(recordStart);
+					try {
+						writeLast(channel, position, output);
+					} catch (IOException writeError) {
+						e.addSuppressed(writeError);
+					}
+					throw e;
+				}
+				count++;
+
+				if (output.getPosition() >= writeRegionBytes) position = writeRegion(channel, position, output);
+			}
+
+			writeLast(channel, position, output);
+			return count;
+
+		} catch (IOException e) {
+			throw new RuntimeException("Problem writing the dump " + file, e);
+		}
+	}
+
+	/**
+	 * Copies the encoded documents to a region mapped at the given position, of their exact size.
+	 * Nothing is mapped past the end of the data, so the file never needs to be truncated while regions are mapped
+	 * (that fails on Windows). Returns the position after the documents.
+	 */
+	private long writeRegion(FileChannel channel, long position, BasicOutputBuffer output) throws IOException {
+		final int length = output.getPosition();
+		channel.map(FileChannel.MapMode.READ_WRITE, position, length).put(output.getInternalBuffer(), 0, length);
+		output.truncateToPosition(0);
+		return position + length;
+	}
+
+	/** Writes the last documents, smaller than a region, through the channel */
+	private void writeLast(FileChannel channel, long position, BasicOutputBuffer output) throws IOException {
+		final ByteBuffer last = ByteBuffer.wrap(output.getInternalBuffer(), 0, output.getPosition());
+		while (last.hasRemaining()) {
+			position += channel.write(last, position);
+		}
+	}
+
+	private void encode(BasicOutputBuffer output, M model) {
+		try (BsonBinaryWriter writer = new BsonBinaryWriter(output)) {
+			if (adapter instanceof BaseCodecAdapter) {
+				((BaseCodecAdapter<M>) adapter).encode(writer, model, EncoderContext.builder().build());
+			} else {
+				documentCodec.encode(writer, adapter.model2doc(model), EncoderContext.builder().build());
+			}
+		}
+	}
+
+
+	// --- Read ---
+
+	/** Reads all the models of the file, in the order they were written */
+	public List<M> read(Path file) {
+		final List<M> result = new ArrayList<>();
+		for (List<M> segment : inSegments(file, this::decodeSegment)) result.addAll(segment);
+		return result;
+	}
+
+	/**
+	 * Passes each model of the file to the consumer, without keeping them in memory. Returns the number of models read.
+	 * The consumer is called from the threads of the {@link #executor}, with the segments in parallel, so it must be thread-safe.
+	 */
+	public long read(Path file, Consumer<? super M> consumer) {
+		long count = 0;
+		for (long segmentCount : inSegments(file, region -> decodeEach(region, consumer))) count += segmentCount;
+		return count;
+	}
+
+	/** Maps each segment of the file and runs the task on it, in parallel. Returns the results in the order of the segments. */
+	private <R> List<R> inSegments(Path file, Function<ByteBuffer, R> task) {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			final List<CompletableFuture<R>> futures = new ArrayList<>();
+			for (long[] segment : split(channel)) {
+				final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, segment[0], segment[1] - segment[0]);
+				futures.add(CompletableFuture.supplyAsync(() -> task.apply(region), executor));
+			}
+
+			final List<R> result = new ArrayList<>(futures.size());
+			for (CompletableFuture<R> future : futures) result.add(future.join());
+			return result;
+
+		} catch (IOException e) {
+			throw new RuntimeException("Problem reading the dump " + file, e);
+		} catch (CompletionException e) {
+			throw new RuntimeException("Problem reading the dump " + file, e.getCause());
+		}
+	}
+
+	/**
+	 * Splits the file into about {@link #segments} segments of whole documents, following their lengths.
+	 * Returns the start and end offset of each segment.
+	 */
+	private List<long[]> split(FileChannel channel) throws IOException {
+
+		final long size = channel.size();
+		final long targetBytes = Math.min(Math.max(1, size / Math.max(1, segments)), maxRegionBytes);
+		final List<long[]> result = new ArrayList<>();
+
+		MappedByteBuffer region = null;
+		long regionStart = 0;
+		long segmentStart = 0;
+		long position = 0;
+
+		while (position < size) {
+
+			if (position + Integer.BYTES > size) throw corrupted(position);
+			if (region == null || position + Integer.BYTES > regionStart + region.capacity()) {
+				regionStart = position;
+				region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(maxRegionBytes, size - regionStart));
+				region.order(ByteOrder.LITTLE_ENDIAN);
+			}
+
+			final int length = region.getInt((int) (position - regionStart));
+			if (length < 5 || position + length > size) throw corrupted(position);
+
+			if (position > segmentStart && position + length - segmentStart > maxRegionBytes) {
+				result.add(new long[] {segmentStart, position});
+				segmentStart = position;
+			}
+			position += length;
+			if (position - segmentStart >= targetBytes) {
+				result.add(new long[] {segmentStart, position});
+				segmentStart = position;
+			}
+		}
+
+		if (segmentStart < size) result.add(new long[] {segmentStart, size});
+		return result;
+	}
+
+	private List<M> decodeSegment(ByteBuffer region) {
+		final List<M> result = new ArrayList<>();
+		decodeEach(region, result::add);
+		return result;
+	}
+
+	/** Decodes the documents of the region (it has whole documents, see {@link #split}). Returns the number of documents. */
+	private long decodeEach(ByteBuffer region, Consumer<? super M> consumer) {
+
+		region.order(ByteOrder.LITTLE_ENDIAN);
+		long count = 0;
+		int position = 0;
+
+		while (position < region.limit()) {
+			final int length = region.getInt(position);
+			final ByteBuffer record = region.duplicate();
+			((Buffer) record).position(position);
+			((Buffer) record).limit(position + length);
+			consumer.accept(decode(record.slice()));
+			position += length;
+			count++;
+		}
+		return count;
+	}
+
+	private M decode(ByteBuffer record) {
+		try (BsonBinaryReader reader = new BsonBinaryReader(record)) {
+			if (adapter instanceof BaseCodecAdapter) {
+				return ((BaseCodecAdapter<M>) adapter).decode(reader, DecoderContext.builder().build());
+			}
+			return adapter.doc2model(documentCodec.decode(reader, DecoderContext.builder().build()));
+		}
+	}
+
+	private static RuntimeException corrupted(long position) {
+		return new IllegalArgumentException("The dump is corrupted: there's no valid document length at offset " + position);
+	}
+}
@@ -1,19 +1,27 @@
 package com.codethen.mongo.adapter.generator;
 
+import com.codethen.mongo.adapter.metrics.AdapterMetrics;
+import com.google.common.base.CaseFormat;
 import com.google.common.reflect.TypeParameter;
 import com.google.common.reflect.TypeToken;
+import com.mongodb.client.model.Projections;
 import com.squareup.javapoet.*;
 import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonReader;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 import javax.lang.model.element.Modifier;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
 
-public class AdapterGenerator {
+public class AdapterGenerator extends BaseAdapterGenerator<Field, Type> {
 
 	private Class<?> modelClass;
 	private Class<Document> docClass = Document.class;
@@ -22,37 +30,62 @@ public class AdapterGenerator {
 	/** Fields that are {@link String} in the model but {@link ObjectId} in the {@link Document} */
 	private Collection<String> objectIdDocFields = Collections.singletonList("_id");
 
+	/** Primitive array fields stored as a packed {@link org.bson.types.Binary} instead of a BSON array. See {@link #setPackedArrayFields}. */
+	private Collection<String> packedArrayDocFields = Collections.emptyList();
+
 	/** How the model class field names (keys) map to {@link Document} field names (values) */
 	private Map<String, String> fieldNames;
 
-	/** Class that contains the fields, named {@link #fieldsClassName} */
-	private TypeSpec fieldsTypeSpec;
-	private String fieldsClassName = "Fields";
-	private String fieldsField = "fields";
+	/** Whether the document field names are replaced by compact keys. See {@link #setCompactKeys}. */
+	private boolean compactKeys = false;
 
-	/** Variable that contains a singleton instance of the adapter */
-	private final static String instanceVar = "INSTANCE";
+	/** The {@link #fieldNames} or the compact keys, set when building the adapter */
+	private Map<String, String> storedFieldNames;
 
-	private final static String typeVar = "T";
+	/** Fields of the model class, in the order of {@link #fieldNames}, set when building the adapter */
+	private List<Field> modelFields;
 
-	/**
-	 * Names of methods defined in {@link BaseDocumentAdapter}.
-	 * They can be used as helpers to generate code.
-	 */
-	protected final static String appendTo = "appendTo";
-	protected final static String model2doc = "model2doc";
-	protected final static String doc2model = "doc2model";
-	protected final static String obj2enum = "obj2enum";
-	protected final static String enum2obj = "enum2obj";
-	protected final static String string2id = "string2id";
-	protected final static String id2string = "id2string";
+	/** Names of the lazy model method and class. See {@link #setGenerateLazy}. */
+	protected final static String doc2modelLazy = "doc2modelLazy";
+	protected final static String lazyClassName = "Lazy";
+
+	/** Name of the raw model class. See {@link #setGenerateRaw}. */
+	protected final static String rawClassName = "Raw";
+
+	/** Whether the adapter is also generated as a {@link org.bson.codecs.Codec}. See {@link BaseCodecAdapter}. */
+	private boolean generateCodec = false;
+
+	/** Whether list fields are converted on access. See {@link #setLazyLists}. */
+	private boolean lazyLists = false;
+
+	/** Whether the adapter has doc2modelLazy, that returns a lazy model. See {@link #setGenerateLazy}. */
+	private boolean generateLazy = false;
+
+	/** Whether the codec decodes into models that keep their BSON. See {@link #setGenerateRaw}. */
+	private boolean generateRaw = false;
+
+	/** Whether the conversions record {@link AdapterMetrics}. See {@link #setGenerateMetrics}. */
+	private boolean generateMetrics = false;
 
+	/** Whether the generated code should avoid allocations as much as possible. See {@link #setAllocationMinimal}. */
+	private boolean allocationMinimal = false;
 
-	/** Name of the variable for the model object */
-	private String modelVar = "model";
+	/** How enum fields are stored, by model field name. See {@link #setEnumStrategy}. */
+	private final Map<String, EnumStrategy> enumStrategies = new HashMap<>();
+
+	/** Codes of the enum constants, for {@link EnumStrategy#CODE} */
+	private final Map<Class<?>, Map<? extends Enum<?>, String>> enumCodes = new HashMap<>();
+
+	/** Subsets of model fields, by projection name. See {@link #addProjection}. */
+	private final Map<String, List<String>> projections = new LinkedHashMap<>();
+
+	/** Name of the adapter being generated */
+	private String adapterName;
+
+	/** Private helper fields and methods added to the adapter while generating the code, by name (and signature) */
+	private final Map<String, FieldSpec> helperFields = new LinkedHashMap<>();
+	private final Map<String, MethodSpec> helperMethods = new LinkedHashMap<>();
 
-	/** Name of the variable for the {@link Document} object */
-	private String docVar = "doc";
 	private AdapterGeneratorContext context;
 
 
@@ -90,6 +123,133 @@ public class AdapterGenerator {
 		this.fieldNames.put(modelField, docField);
 	}
 
+	public boolean isCompactKeys() {
+		return compactKeys;
+	}
+
+	/**
+	 * Stores the fields with short keys assigned by the {@link CompactKeys} of the context, instead of the names in {@link #fieldNames}.
+	 * The Fields constants contain the keys. The names in {@link #fieldNames} are still used to configure the generator
+	 * (e.g. in {@link #setObjectIdDocFields}), and the ones that are "_id" are kept.
+	 */
+	public void setCompactKeys(boolean compactKeys) {
+		this.compactKeys = compactKeys;
+	}
+
+	public boolean isGenerateCodec() {
+		return generateCodec;
+	}
+
+	/**
+	 * Generates the adapter as a {@link org.bson.codecs.Codec} too, that reads/writes BSON without an intermediate {@link Document}.
+	 * The adapter superclass must be a {@link BaseCodecAdapter} (it's used by default instead of {@link BaseDocumentAdapter}).
+	 * Adapters of nested models must be generated as codecs too.
+	 */
+	public void setGenerateCodec(boolean generateCodec) {
+		this.generateCodec = generateCodec;
+	}
+
+	public boolean isLazyLists() {
+		return lazyLists;
+	}
+
+	/**
+	 * Converts list fields of {@link ObjectId}s, enums and models with an adapter into a {@link LazyList},
+	 * a view of the document list that converts each item on its first access, instead of converting all of them.
+	 */
+	public void setLazyLists(boolean lazyLists) {
+		this.lazyLists = lazyLists;
+	}
+
+	public boolean isGenerateLazy() {
+		return generateLazy;
+	}
+
+	/**
+	 * Generates doc2modelLazy, that returns an instance of a generated subclass of the model (named Lazy)
+	 * that keeps the {@link Document} and converts each field on the first call to its getter.
+	 * It returns the model class, also in the subclasses of the adapter (Lazy is not a subclass of their models).
+	 * Nested models are converted lazily too, if their adapters are generated with this option.
+	 * Only for adapters whose superclass is {@link BaseDocumentAdapter} (or {@link BaseCodecAdapter}).
+	 */
+	public void setGenerateLazy(boolean generateLazy) {
+		this.generateLazy = generateLazy;
+	}
+
+	public boolean isGenerateRaw() {
+		return generateRaw;
+	}
+
+	/**
+	 * Makes the codec decode into an instance of a generated subclass of the model (named Raw, a {@link RawModel})
+	 * that keeps the BSON document and decodes it on the first call to a getter or setter.
+	 * If the model didn't change, it's encoded by copying that BSON (e.g. nested models in a read-modify-write).
+	 * Getters that return mutable values (e.g. lists or models) count as changes.
+	 * Only for adapters generated as codecs. It doesn't change the conversions to/from {@link Document}.
+	 */
+	public void setGenerateRaw(boolean generateRaw) {
+		this.generateRaw = generateRaw;
+	}
+
+	public boolean isGenerateMetrics() {
+		return generateMetrics;
+	}
+
+	/**
+	 * Generates model2doc and doc2model so they measure each conversion and record it with {@link BaseDocumentAdapter#setMetrics}.
+	 * Adapters generated without metrics have no instrumentation code at all.
+	 */
+	public void setGenerateMetrics(boolean generateMetrics) {
+		this.generateMetrics = generateMetrics;
+	}
+
+	public boolean isAllocationMinimal() {
+		return allocationMinimal;
+	}
+
+	/**
+	 * Generates code that allocates as little as possible: list fields that need a conversion
+	 * (of {@link ObjectId}s, enums or models with an adapter) are converted with a helper method
+	 * that fills a pre-sized list in a plain indexed loop, instead of using streams and lambdas.
+	 * Lists are accessed by index, so they should be {@link RandomAccess} (like the ones created by the driver).
+	 * Lists bigger than the parallel threshold are still converted in parallel (see {@link BaseAdapter#setParallelThreshold}).
+	 */
+	public void setAllocationMinimal(boolean allocationMinimal) {
+		this.allocationMinimal = allocationMinimal;
+	}
+
+	public Map<String, EnumStrategy> getEnumStrategies() {
+		return enumStrategies;
+	}
+
+	/**
+	 * Sets how the given enum field (or list of enums) is stored.
+	 * The generated adapter will contain static lookup tables and switch-based conversions, so no reflection is used.
+	 * If no strategy is set, the enum is stored by name using the helpers in {@link BaseAdapter}.
+	 */
+	public void setEnumStrategy(String modelField, EnumStrategy strategy) {
+		this.enumStrategies.put(modelField, strategy);
+	}
+
+	/** Sets the codes of an enum, used by fields with {@link EnumStrategy#CODE}. All constants need a (unique) code. */
+	public <E extends Enum<E>> void setEnumCodes(Class<E> enumClass, Map<E, String> codes) {
+		this.enumCodes.put(enumClass, codes);
+	}
+
+	public Map<String, List<String>> getProjections() {
+		return projections;
+	}
+
+	/**
+	 * Adds a projection for a subset of the model fields (declared in this adapter).
+	 * The adapter will contain a static {@link Bson} projection, e.g. SUMMARY_PROJECTION for "summary",
+	 * to use in find(...).projection(...), and a matching doc2model variant, e.g. doc2modelSummary,
+	 * that only reads those fields (primitive fields are only set if they are present).
+	 */
+	public void addProjection(String name, List<String> modelFields) {
+		this.projections.put(name, modelFields);
+	}
+
 	public Class<?> getModelClass() {
 		return modelClass;
 	}
@@ -114,107 +274,256 @@ public class AdapterGenerator {
 		this.objectIdDocFields = objectIdDocFields;
 	}
 
+	public Collection<String> getPackedArrayDocFields() {
+		return packedArrayDocFields;
+	}
+
+	/**
+	 * Document fields of type int[], long[] or double[] in the model that are stored packed in a {@link org.bson.types.Binary}
+	 * (little-endian, see {@link BaseDocumentAdapter#array2binary}), instead of a BSON array of numbers.
+	 * It's much smaller and faster for big arrays, but the values can't be queried.
+	 * Both forms are read, so a field can be packed later without migrating the documents.
+	 */
+	public void setPackedArrayFields(Collection<String> packedArrayDocFields) {
+		this.packedArrayDocFields = packedArrayDocFields;
+	}
+
 	public TypeSpec build() throws Exception {
 
-		final String adapterName = modelClass.getSimpleName() + "Adapter";
+		adapterName = modelClass.getSimpleName() + "Adapter";
 
-		fieldsTypeSpec = buildFieldsClass();
+		if (generateCodec) {
+			if (adapterSuperclass.equals(BaseDocumentAdapter.class)) {
+				adapterSuperclass = BaseCodecAdapter.class;
+			} else if (!BaseCodecAdapter.class.isAssignableFrom(adapterSuperclass)) {
+				throw new IllegalArgumentException("Adapter superclass must be a " + BaseCodecAdapter.class.getSimpleName() + " to generate a codec: " + adapterSuperclass);
+			}
+		}
 
-		return TypeSpec.classBuilder(adapterName)
-			.addModifiers(Modifier.PUBLIC)
-			.addTypeVariable(TypeVariableName.get(typeVar).withBounds(modelClass))
-			.superclass(ParameterizedTypeName.get(ClassName.get(getAdapterSuperclass()), ClassName.bestGuess(typeVar)))
-			.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
-			.addType(fieldsTypeSpec)
-			.addField(FieldSpec
-				.builder(ClassName.bestGuess(fieldsClassName), fieldsField, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
-				.initializer("new $N()", fieldsTypeSpec)
-				.build())
-			.addField(buildInstanceField(adapterName))
-			.addMethod(build_newModelInstance())
-			.addMethod(build_model2doc())
-			.addMethod(build_doc2model())
+		if (generateRaw && !generateCodec) {
+			throw new IllegalArgumentException("Raw models can only be generated for adapters generated as codecs: " + modelClass);
+		}
+
+		if (generateLazy && !adapterSuperclass.equals(BaseDocumentAdapter.class) && !adapterSuperclass.equals(BaseCodecAdapter.class)) {
+			throw new IllegalArgumentException("Lazy models can't be generated for adapters with a custom superclass: " + adapterSuperclass);
+		}
+
+		storedFieldNames = compactKeys ? assignCompactKeys() : fieldNames;
+		modelFields = new ArrayList<>();
+		for (String fieldName : fieldNames.keySet()) {
+			modelFields.add(modelClass.getDeclaredField(fieldName));
+		}
+		helperFields.clear();
+		helperMethods.clear();
+
+		final TypeSpec.Builder adapterBuilder = buildAdapter();
+
+		if (generateRaw) {
+			adapterBuilder
+				.addMethod(build_decodeRaw())
+				.addType(buildRawClass());
+		}
+
+		return adapterBuilder
+			.addFields(helperFields.values())
+			.addMethods(helperMethods.values())
 			.build();
 	}
 
+	/** Adds the projections and the lazy model */
+	@Override
+	protected void addMembers(TypeSpec.Builder adapterBuilder) {
+		try {
+			for (Map.Entry<String, List<String>> projection : projections.entrySet()) {
+				adapterBuilder
+					.addField(buildProjectionField(projection.getKey(), projection.getValue()))
+					.addMethod(build_doc2modelProjection(projection.getKey(), projection.getValue()));
+			}
+
+			if (generateLazy) {
+				adapterBuilder
+					.addMethod(build_doc2modelLazy())
+					.addMethod(build_doc2modelLazyList())
+					.addType(buildLazyClass());
+			}
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException("Unknown field in " + modelClass, e);
+		}
+	}
+
 	public boolean isDocFieldObjectId(String docFieldName) {
 		return getObjectIdDocFields().contains(docFieldName);
 	}
 
-	/** Builds a static field that contains a singleton of the adapter */
-	private FieldSpec buildInstanceField(String adapterName) {
-		return FieldSpec.builder(ParameterizedTypeName.get(ClassName.bestGuess(adapterName), ClassName.get(modelClass)), instanceVar, Modifier.PUBLIC, Modifier.FINAL, Modifier.STATIC)
-			.initializer("new $L<>()", adapterName)
-			.build();
+	/**
+	 * Types whose adapters may be used by the generated adapter: the superclass of the model
+	 * and the types of its fields (or their item types, for lists). See {@link AdapterGeneratorContext#generateAll}.
+	 */
+	public Set<Type> getDependencies() throws NoSuchFieldException {
+		final Set<Type> result = new HashSet<>();
+		result.add(modelClass.getSuperclass());
+		for (String fieldName : fieldNames.keySet()) {
+			result.add(itemType(modelClass.getDeclaredField(fieldName).getGenericType()));
+		}
+		return result;
 	}
 
-	/** Builds the class that will contain static String fields, each one with each of the {@link #fieldNames} */
-	private TypeSpec buildFieldsClass() {
+	// --- The model, for BaseAdapterGenerator ---
 
-		final Class<? extends BaseDocumentAdapter> adapterSuperclass = getAdapterSuperclass();
+	@Override
+	protected ClassName getAdapterClassName() {
+		return ClassName.get("", adapterName);
+	}
 
-		final TypeSpec.Builder fieldsBuilder = TypeSpec.classBuilder(fieldsClassName)
-			.superclass(ClassName.get(adapterSuperclass.getPackage().getName(), adapterSuperclass.getSimpleName(), fieldsClassName))
-			.addModifiers(Modifier.PUBLIC, Modifier.STATIC);
+	@Override
+	protected ClassName getAdapterSuperclassName() {
+		return ClassName.get(getAdapterSuperclass());
+	}
 
-		for (String fieldName : fieldNames.keySet()) {
-			fieldsBuilder.addField(FieldSpec.builder(String.class, fieldName, Modifier.PUBLIC, Modifier.FINAL)
-				.initializer("$S", fieldNames.get(fieldName))
-				.build());
-		}
+	@Override
+	protected TypeName getModelTypeName() {
+		return ClassName.get(modelClass);
+	}
 
-		return fieldsBuilder.build();
+	@Override
+	protected List<Field> getModelFields() {
+		return modelFields;
 	}
 
-	private MethodSpec build_newModelInstance() {
+	@Override
+	protected String name(Field modelField) {
+		return modelField.getName();
+	}
 
-		final ClassName returnType = ClassName.bestGuess(typeVar);
+	@Override
+	protected String storedName(Field modelField) {
+		return storedFieldNames.get(modelField.getName());
+	}
 
-		return MethodSpec.methodBuilder("newModelInstance")
-			.addAnnotation(Override.class)
-			.addModifiers(Modifier.PUBLIC)
-			.returns(returnType)
-			.addStatement("return ($T) new $T()", returnType, modelClass)
+	@Override
+	protected Type fieldType(Field modelField) {
+		return modelField.getGenericType();
+	}
+
+	private Map<String, String> assignCompactKeys() throws ReflectiveOperationException {
+		if (context.getCompactKeys() == null) throw new IllegalArgumentException("The context needs CompactKeys to generate compact keys for " + modelClass);
+		return context.getCompactKeys().assign(modelClass, fieldNames, getAdapterSuperclassKeys());
+	}
+
+	/** Document field names of the adapter superclass, read from its Fields class */
+	private Set<String> getAdapterSuperclassKeys() throws ReflectiveOperationException {
+		final Set<String> result = new HashSet<>();
+		for (Class<?> declaredClass : adapterSuperclass.getDeclaredClasses()) {
+			if (!declaredClass.getSimpleName().equals(fieldsClassName)) continue;
+			final Object fields = declaredClass.getDeclaredConstructor().newInstance();
+			for (Field field : declaredClass.getFields()) {
+				if (field.getType().equals(String.class)) result.add((String) field.get(fields));
+			}
+		}
+		return result;
+	}
+
+	/** Builds the class that will contain static String fields, each one with each of the {@link #storedFieldNames} */
+	@Override
+	protected TypeSpec buildFieldsClass() {
+		final TypeSpec fieldsTypeSpec = super.buildFieldsClass();
+		if (!compactKeys) return fieldsTypeSpec;
+		return fieldsTypeSpec.toBuilder()
+			.addJavadoc("Compact keys, that save about $L bytes per document. See {@link $T}.\n",
+				context.getCompactKeys().getSavings().get(modelClass), CompactKeys.class)
 			.build();
 	}
 
-	private MethodSpec build_model2doc() throws NoSuchFieldException {
+	@Override
+	protected FieldSpec buildFieldsField(Field modelField) {
+		final FieldSpec fieldSpec = super.buildFieldsField(modelField);
+		if (!compactKeys || storedName(modelField).equals(fieldNames.get(modelField.getName()))) return fieldSpec;
+		return fieldSpec.toBuilder()
+			.addJavadoc("Compact key of $S\n", fieldNames.get(modelField.getName()))
+			.build();
+	}
+	/**
+	 * Whether the adapter superclass has its own doc2model(doc, target) to call with super,
+	 * or just the one of {@link BaseDocumentAdapter} (that throws, so {@link BaseDocumentAdapter#refillTarget} is called instead)
+	 */
+	@Override
+	protected boolean superclassRefills() {
+		try {
+			return adapterSuperclass.getMethod(doc2model, Document.class, Object.class).getDeclaringClass() != BaseDocumentAdapter.class;
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("Adapter superclass without doc2model(doc, target): " + adapterSuperclass, e);
+		}
+	}
+	/** The values are converted like in doc2model, but lists are converted at once to check all their items */
+	@Override
+	protected MethodSpec build_validate() {
+		final boolean lazyLists = this.lazyLists;
+		this.lazyLists = false;
+		try {
+			return super.build_validate();
+		} finally {
+			this.lazyLists = lazyLists;
+		}
+	}
 
-		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(model2doc)
-			.addAnnotation(Override.class)
-			.addModifiers(Modifier.PUBLIC)
-			.returns(docClass)
-			.addParameter(ClassName.bestGuess(typeVar), modelVar)
-			.addStatement("final $T $L = super.$L($L)", docClass, docVar, model2doc, modelVar)
-			.addStatement("if ($L == null) return null", docVar);
+	/** Enums with a strategy are decoded with its helper (see {@link #setEnumStrategy}) */
+	@Override
+	protected CodeBlock buildEnumItemDecoder(Field modelField, String itemVar) {
+		final EnumStrategy strategy = enumStrategies.get(modelField.getName());
+		if (strategy == null) return super.buildEnumItemDecoder(modelField, itemVar);
+		return applyFunction(addEnumDecoder((Class<?>) itemType(modelField.getGenericType()), strategy, false), itemVar);
+	}
 
-		for (String fieldName : fieldNames.keySet()) {
-			final Field modelField = modelClass.getDeclaredField(fieldName);
-			methodBuilder
-				.addStatement(buildModelFieldExtractStatement(docVar, modelVar, modelField));
+	@Override
+	public TypeName getDocFieldClass(Field modelField) {
+		if (!isObjectId(modelField) && containsEnum(modelField.getGenericType()) && enumStrategies.get(modelField.getName()) == EnumStrategy.ORDINAL) {
+			return ClassName.get(Integer.class);
 		}
+		return super.getDocFieldClass(modelField);
+	}
+	/** Builds the static field with the projection, e.g. SUMMARY_PROJECTION = Projections.include(fields.name, fields.age) */
+	private FieldSpec buildProjectionField(String projectionName, List<String> projectionFields) {
 
-		return methodBuilder
-			.addStatement("return $L", docVar)
+		final CodeBlock includedFields = projectionFields.stream()
+			.map(f -> CodeBlock.of("$L.$L", fieldsField, checkProjectionField(projectionName, f)))
+			.collect(CodeBlock.joining(", "));
+
+		final boolean includesId = projectionFields.stream().anyMatch(f -> storedFieldNames.get(f).equals("_id"));
+
+		final CodeBlock initializer = includesId
+			? CodeBlock.of("$T.include($L)", Projections.class, includedFields)
+			: CodeBlock.of("$T.fields($T.include($L), $T.excludeId())", Projections.class, Projections.class, includedFields, Projections.class);
+
+		return FieldSpec.builder(Bson.class, projectionFieldName(projectionName), Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+			.initializer(initializer)
 			.build();
 	}
 
-	private MethodSpec build_doc2model() throws NoSuchFieldException {
+	/** Builds the doc2model variant that only reads the fields of the projection */
+	private MethodSpec build_doc2modelProjection(String projectionName, List<String> projectionFields) throws NoSuchFieldException {
 
 		final ClassName returnType = ClassName.bestGuess(typeVar);
 
-		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(doc2model)
-			.addAnnotation(Override.class)
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(doc2model + StringUtils.capitalize(projectionName))
+			.addJavadoc("Only reads the fields of {@link #$L}\n", projectionFieldName(projectionName))
 			.addModifiers(Modifier.PUBLIC)
 			.returns(returnType)
 			.addParameter(docClass, docVar)
-			.addStatement("final $T $L = super.$L($L)", returnType, modelVar, doc2model, docVar)
-			.addStatement("if ($L == null) return null", modelVar);
+			.addStatement("if ($L == null) return null", docVar)
+			.addStatement("final $T $L = newModelInstance()", returnType, modelVar);
 
-		for (String fieldName : fieldNames.keySet()) {
+		for (String fieldName : projectionFields) {
 			final Field modelField = modelClass.getDeclaredField(fieldName);
-			methodBuilder
-				.addStatement(buildDocFieldExtractStatement(modelVar, docVar, modelField));
+			if (modelField.getType().isPrimitive()) {
+				// Primitives keep their default value if the field is missing or null (it can't be unboxed)
+				methodBuilder
+					.beginControlFlow("if ($L.get($L.$L) != null)", docVar, fieldsField, fieldName)
+					.addStatement(buildDocFieldExtractStatement(modelVar, docVar, modelField))
+					.endControlFlow();
+			} else {
+				methodBuilder
+					.addStatement(buildDocFieldExtractStatement(modelVar, docVar, modelField));
+			}
 		}
 
 		return methodBuilder
@@ -222,98 +531,485 @@ public class AdapterGenerator {
 			.build();
 	}
 
+	private String checkProjectionField(String projectionName, String modelField) {
+		if (!fieldNames.containsKey(modelField)) throw new IllegalArgumentException("Projection " + projectionName + " has an unknown field: " + modelField);
+		return modelField;
+	}
+
+	/** Name of the static field with the projection, e.g. SUMMARY_PROJECTION for "summary" */
+	private String projectionFieldName(String projectionName) {
+		return CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, projectionName) + "_PROJECTION";
+	}
+
 	/**
-	 * Generates the statement to set the given modelVar field into the docVar.
-	 * The result is something like: append(doc, Fields.someField, model.getSomeField())
-	 * Usually you don't need to override this method, but you could do it in some special cases.
-	 * It's more probable that you want to override {@link #buildModelFieldExtractor(String, Field)}.
+	 * Returns the model class, not T: Lazy is a subclass of the model class, not of the model created by
+	 * a subclass of the adapter (e.g. PersonAdapter&lt;MyPerson&gt;).
 	 */
-	public CodeBlock buildModelFieldExtractStatement(String docVar, String modelVar, Field modelField) {
-		return CodeBlock.builder().add("$L($L, $L.$L, $L)",
-			appendTo, docVar, fieldsField, modelField.getName(), buildModelFieldExtractor(modelVar, modelField)).build();
+	private MethodSpec build_doc2modelLazy() {
+
+		return MethodSpec.methodBuilder(doc2modelLazy)
+			.addJavadoc("Returns a {@link $L} model, that converts each field from the document on the first call to its getter\n", lazyClassName)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(modelClass)
+			.addParameter(docClass, docVar)
+			.addStatement("if ($L == null) return null", docVar)
+			.addStatement("return new $L($L)", lazyClassName, docVar)
+			.build();
+	}
+
+	private MethodSpec build_doc2modelLazyList() {
+
+		final String docsVar = docVar + "s";
+
+		return MethodSpec.methodBuilder(doc2modelLazy)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(ParameterizedTypeName.get(List.class, modelClass))
+			.addParameter(ParameterizedTypeName.get(List.class, docClass), docsVar)
+			.addStatement("return mapToList($L, this::$L)", docsVar, doc2modelLazy)
+			.build();
 	}
 
 	/**
-	 * Generates the statement to set the given docVar field into the modelVar.
-	 * The result is something like: model.setSomeField(doc.get(Fields.someField))
-	 * Usually you don't need to override this method, but you could do it in some special cases.
-	 * It's more probable that you want to override {@link #buildDocFieldExtractor(String, Field, Type)}.
+	 * Builds the inner class Lazy, a subclass of the model that keeps the document.
+	 * Each getter converts its field the first time (with the same code as doc2model), and each setter marks its field as converted.
+	 * It's an inner class, so the conversions can use the adapter methods.
 	 */
-	public CodeBlock buildDocFieldExtractStatement(String modelVar, String docVar, Field modelField) {
-		final String setterMethodName = "set" + StringUtils.capitalize(modelField.getName());
-		return CodeBlock.builder().add("$L.$L($L)", modelVar, setterMethodName, buildDocFieldExtractor(docVar, modelField, modelField.getGenericType())).build();
+	private TypeSpec buildLazyClass() throws NoSuchFieldException {
+
+		final TypeSpec.Builder lazyBuilder = TypeSpec.classBuilder(lazyClassName)
+			.addJavadoc("{@link $T} that keeps the document and converts each field on the first call to its getter.\n", modelClass)
+			.addJavadoc("Setters mark their field as converted, so the value in the document is ignored. It's not thread-safe.\n")
+			.addModifiers(Modifier.PUBLIC)
+			.superclass(modelClass)
+			.addField(docClass, docVar, Modifier.PRIVATE, Modifier.FINAL)
+			.addMethod(MethodSpec.constructorBuilder()
+				.addParameter(docClass, docVar)
+				.addStatement("this.$L = $L", docVar, docVar)
+				.build());
+
+		final MethodSpec.Builder loadAllBuilder = MethodSpec.methodBuilder("loadAll")
+			.addJavadoc("Converts the fields that were not converted yet (e.g. before serializing the model by its fields)\n")
+			.addModifiers(Modifier.PUBLIC);
+
+		for (String fieldName : fieldNames.keySet()) {
+
+			final Field modelField = modelClass.getDeclaredField(fieldName);
+			final TypeName fieldType = TypeName.get(modelField.getGenericType());
+			final String loadedField = fieldName + "Loaded";
+
+			lazyBuilder
+				.addField(boolean.class, loadedField, Modifier.PRIVATE)
+				.addMethod(MethodSpec.methodBuilder(getterName(modelField))
+					.addAnnotation(Override.class)
+					.addModifiers(Modifier.PUBLIC)
+					.returns(fieldType)
+					.beginControlFlow("if (!$L)", loadedField)
+					.addStatement("super.$L($L)", setterName(modelField), buildLazyFieldExtractor(modelField))
+					.addStatement("$L = true", loadedField)
+					.endControlFlow()
+					.addStatement("return $L", buildModelFieldGetter("super", modelField))
+					.build())
+				.addMethod(MethodSpec.methodBuilder(setterName(modelField))
+					.addAnnotation(Override.class)
+					.addModifiers(Modifier.PUBLIC)
+					.addParameter(fieldType, fieldName)
+					.addStatement("$L = true", loadedField)
+					.addStatement("super.$L($L)", setterName(modelField), fieldName)
+					.build());
+
+			loadAllBuilder.addStatement("$L()", getterName(modelField));
+		}
+
+		return lazyBuilder
+			.addMethod(loadAllBuilder.build())
+			.build();
 	}
 
+	/** Same as {@link #buildDocFieldExtractor}, but nested models are lazy too if their adapters have doc2modelLazy */
+	private Object buildLazyFieldExtractor(Field modelField) {
+
+		final Type fieldType = modelField.getGenericType();
+		final Type itemType = itemType(fieldType);
+		final TypeSpec itemAdapter = context.getAdapters().get(itemType);
+
+		if (!isObjectId(modelField) && !containsEnum(fieldType) && itemAdapter != null
+			&& itemAdapter.methodSpecs.stream().anyMatch(m -> m.name.equals(doc2modelLazy))) {
+			if (lazyLists && isList(fieldType)) {
+				return applyLazyList(CodeBlock.of("$L.$L", getAdapterInstance(itemType), doc2modelLazy),
+					applyCast(typeForListOf(Document.class), CodeBlock.of("$L.get($L.$L)", docVar, fieldsField, modelField.getName())), null);
+			}
+			return CodeBlock.of("$L.$L(($T) $L.get($L.$L))", getAdapterInstance(itemType), doc2modelLazy,
+				getType(isList(fieldType), docClass), docVar, fieldsField, modelField.getName());
+		}
+
+		return buildDocFieldExtractor(docVar, modelField, fieldType);
+	}
+
+	/** Overrides decode to return a {@link #rawClassName} model, only in the adapter of the model (not in the subclass adapters) */
+	private MethodSpec build_decodeRaw() {
+
+		final ClassName returnType = ClassName.bestGuess(typeVar);
+
+		return MethodSpec.methodBuilder("decode")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(returnType)
+			.addParameter(BsonReader.class, readerVar)
+			.addParameter(DecoderContext.class, ctxVar)
+			.addStatement("if (getClass() != $L.class) return super.decode($L, $L)", adapterName, readerVar, ctxVar)
+			.addStatement("return ($T) new $L(readRawDocument($L, $L))", returnType, rawClassName, readerVar, ctxVar)
+			.build();
+	}
 
 	/**
-	 * Generates the code to extract the given field from the modelVar.
-	 * The result is something like this for basic types: model.getSomeField().
-	 * For some types an adapter function is applied, e.g. enum2obj(model.getSomeField())
-	 *
-	 * You may override this method in some cases. Return any object that can be converted to a String.
-	 * See: https://github.com/square/javapoet#l-for-literals
+	 * Builds the inner class Raw, a subclass of the model that keeps the BSON document.
+	 * All the getters and setters of the model (including the inherited ones) decode the document the first time,
+	 * and the setters and the getters of mutable values mark the model as changed.
 	 */
-	public Object buildModelFieldExtractor(String modelVar, Field modelField) {
+	private TypeSpec buildRawClass() {
 
-		final String getterPrefix = modelField.getType().equals(boolean.class) ? "is" : "get";
-		final String getterMethodName = getterPrefix + StringUtils.capitalize(modelField.getName());
+		final String rawVar = "raw";
+		final String loadedVar = "loaded";
+		final String changedVar = "changed";
 
-		// model.getFIELD()
-		CodeBlock result = CodeBlock.builder().add("$L.$L()", modelVar, getterMethodName).build();
+		final TypeSpec.Builder rawBuilder = TypeSpec.classBuilder(rawClassName)
+			.addJavadoc("{@link $T} that keeps the BSON and decodes it on the first call to a getter or setter.\n", modelClass)
+			.addJavadoc("If it didn't change, it's encoded by copying the BSON. It's not thread-safe.\n")
+			.addModifiers(Modifier.PUBLIC)
+			.superclass(modelClass)
+			.addSuperinterface(RawModel.class)
+			.addField(RawBsonDocument.class, rawVar, Modifier.PRIVATE, Modifier.FINAL)
+			.addField(boolean.class, loadedVar, Modifier.PRIVATE)
+			.addField(boolean.class, changedVar, Modifier.PRIVATE)
+			.addMethod(MethodSpec.constructorBuilder()
+				.addParameter(RawBsonDocument.class, rawVar)
+				.addStatement("this.$L = $L", rawVar, rawVar)
+				.build())
+			.addMethod(MethodSpec.methodBuilder("getRawDocument")
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.returns(RawBsonDocument.class)
+				.addStatement("return $L ? null : $L", changedVar, rawVar)
+				.build())
+			.addMethod(MethodSpec.methodBuilder("loadAll")
+				.addJavadoc("Decodes the document, if it wasn't decoded yet (the setters called while decoding are not changes)\n")
+				.addModifiers(Modifier.PUBLIC)
+				.addStatement("if ($L) return", loadedVar)
+				.addStatement("$L = true", loadedVar)
+				.addStatement("decodeRaw($L, ($T) this)", rawVar, ClassName.bestGuess(typeVar))
+				.addStatement("$L = false", changedVar)
+				.build());
 
-		// Adaptations
+		final List<Method> methods = new ArrayList<>(Arrays.asList(modelClass.getMethods()));
+		methods.sort(Comparator.comparing(Method::getName)); // The order of getMethods is unspecified
 
-		if (isFieldObjectId(modelField)) {
-			result = applyFunction(string2id, result);
+		for (Method method : methods) {
 
-		} else if (containsEnum(modelField.getGenericType())) {
-			result = applyFunction(enum2obj, result);
+			if (method.getDeclaringClass().equals(Object.class) || java.lang.reflect.Modifier.isFinal(method.getModifiers())
+				|| java.lang.reflect.Modifier.isStatic(method.getModifiers())) continue;
 
-		} else {
-			// Model adapters
-			final Type itemType = getTypeOrTypeArgument(modelField.getGenericType());
-			if (context.getAdapters().containsKey(itemType)) {
-				result = applyFunction(getAdapterFunction(model2doc, itemType), result);
+			final boolean isGetter = method.getParameterCount() == 0 && !method.getReturnType().equals(void.class)
+				&& (method.getName().startsWith("get") || method.getName().startsWith("is"));
+			final boolean isSetter = method.getParameterCount() == 1 && method.getName().startsWith("set");
+			if (!isGetter && !isSetter) continue;
+
+			final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(method.getName())
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.addStatement("loadAll()");
+
+			if (isGetter) {
+				if (!isImmutable(method.getReturnType())) methodBuilder.addStatement("$L = true", changedVar);
+				methodBuilder
+					.returns(TypeName.get(method.getGenericReturnType()))
+					.addStatement("return super.$L()", method.getName());
+			} else {
+				methodBuilder
+					.addParameter(TypeName.get(method.getGenericParameterTypes()[0]), "value")
+					.addStatement("$L = true", changedVar)
+					.addStatement("super.$L(value)", method.getName());
 			}
+
+			rawBuilder.addMethod(methodBuilder.build());
 		}
 
-		return result;
+		return rawBuilder.build();
+	}
+
+	/** Whether values of the type can't be changed, so getting them doesn't change the model */
+	private boolean isImmutable(Class<?> type) {
+		return type.isPrimitive() || type.isEnum() || type.equals(String.class) || type.equals(ObjectId.class)
+			|| Number.class.isAssignableFrom(type) && type.getName().startsWith("java.lang.") || type.equals(Boolean.class);
+	}
+
+	/** Enums with a strategy are written with its helper (see {@link #setEnumStrategy}) */
+	@Override
+	public CodeBlock buildCodecFieldEncodeStatement(String writerVar, String modelVar, Field modelField) {
+
+		final Type fieldType = modelField.getGenericType();
+
+		if (!isObjectId(modelField) && containsEnum(fieldType) && enumStrategies.containsKey(modelField.getName())) {
+			final String encoder = addEnumEncoder((Class<?>) itemType(fieldType), enumStrategies.get(modelField.getName()), false);
+			final CodeBlock getter = buildModelFieldGetter(modelVar, modelField);
+			return isList(fieldType)
+				? CodeBlock.of("encodeEnums($L, $L.$L, $L, $L::$L)", writerVar, fieldsField, modelField.getName(), getter, adapterName, encoder)
+				: CodeBlock.of("encodeField($L, $L.$L, $L($L))", writerVar, fieldsField, modelField.getName(), encoder, getter);
+		}
+
+		return super.buildCodecFieldEncodeStatement(writerVar, modelVar, modelField);
+	}
+
+	/** Enums with a strategy are read with its helper (see {@link #setEnumStrategy}) */
+	@Override
+	public Object buildCodecFieldDecoder(String readerVar, Field modelField, Type fieldType) {
+
+		if (!isObjectId(modelField) && containsEnum(fieldType) && enumStrategies.containsKey(modelField.getName())) {
+			final EnumStrategy strategy = enumStrategies.get(modelField.getName());
+			final String decoder = addEnumDecoder((Class<?>) itemType(fieldType), strategy, false);
+			if (isList(fieldType)) return CodeBlock.of("readEnums($L, $L::$L)", readerVar, adapterName, decoder);
+			return CodeBlock.of("$L($L.$L())", decoder, readerVar, strategy == EnumStrategy.ORDINAL ? "readInt32" : "readString");
+		}
+
+		return super.buildCodecFieldDecoder(readerVar, modelField, fieldType);
+	}
+
+	/**
+	 * Adds the enum strategies (see {@link #setEnumStrategy})
+	 * and the list helpers of {@link #setAllocationMinimal} to the conversions of {@link BaseAdapterGenerator#buildModelFieldExtractor}.
+	 */
+	@Override
+	public Object buildModelFieldExtractor(String modelVar, Field modelField) {
+
+		final Type fieldType = modelField.getGenericType();
+		final Type itemType = itemType(fieldType);
+		final CodeBlock getter = buildModelFieldGetter(modelVar, modelField);
+		final String helperName = modelField.getName() + "2doc";
+
+		if (!isObjectId(modelField) && containsEnum(fieldType) && enumStrategies.containsKey(modelField.getName())) {
+			return applyFunction(addEnumEncoder((Class<?>) itemType, enumStrategies.get(modelField.getName()), isList(fieldType)), getter);
+		}
+
+		if (allocationMinimal && isList(fieldType)) {
+			if (isObjectId(modelField)) {
+				return applyFunction(addListHelper(helperName, fieldType, typeForListOf(ObjectId.class), CodeBlock.of("$L", string2id)), getter);
+			} else if (isEnum(itemType)) {
+				return applyFunction(addListHelper(helperName, fieldType, typeForListOf(Object.class), CodeBlock.of("$L", enum2obj)), getter);
+			} else if (context.getAdapters().containsKey(itemType)) {
+				return applyFunction(addListHelper(helperName, fieldType, typeForListOf(Document.class), getAdapterFunction(model2doc, itemType)), getter);
+			}
+		}
+
+		return super.buildModelFieldExtractor(modelVar, modelField);
 	}
 
 	/**
-	 * Generates the code to extract the given field from the docVar.
-	 * The result is something like this for basic types: doc.getInteger(Fields.someField).
-	 * For some types an adapter function is applied, e.g. obj2enum(doc.get(Fields.someField))
-	 *
-	 * You may override this method in some cases. Return any object that can be converted to a String.
-	 * See: https://github.com/square/javapoet#l-for-literals
+	 * Adds the enum strategies (see {@link #setEnumStrategy}), the lazy lists of {@link #setLazyLists}
+	 * and the list helpers of {@link #setAllocationMinimal} to the conversions of {@link BaseAdapterGenerator#buildDocFieldExtractor}.
 	 */
+	@Override
 	public Object buildDocFieldExtractor(String docVar, Field modelField, Type fieldType) {
 
 		// doc.get(Fields.someField)
-		Object result = CodeBlock.builder().add("$L.$L($L.$L)", docVar, "get", fieldsField, modelField.getName()).build();
+		final CodeBlock value = CodeBlock.of("$L.get($L.$L)", docVar, fieldsField, modelField.getName());
+
+		final boolean isList = isList(fieldType);
+		final Type itemType = itemType(fieldType);
+		final boolean inLazyList = lazyLists && isList;
+		final String helperName = modelField.getName() + "2model";
+
+		if (!isObjectId(modelField) && containsEnum(fieldType) && enumStrategies.containsKey(modelField.getName())) {
+			final String decoder = addEnumDecoder((Class<?>) itemType, enumStrategies.get(modelField.getName()), isList && !inLazyList);
+			return inLazyList
+				? applyLazyList(decoder, applyCast(getType(true, Object.class), value), null)
+				: applyFunction(decoder, applyCast(getType(isList, Object.class), value));
+		}
 
-		// Adaptations
+		if (inLazyList) {
+			if (isObjectId(modelField)) {
+				return applyLazyList(id2string, applyCast(getType(true, ObjectId.class), value), null);
+			} else if (isEnum(itemType)) {
+				return applyLazyList(obj2enum, applyCast(getType(true, Object.class), value), itemType);
+			} else if (context.getAdapters().containsKey(itemType)) {
+				return applyLazyList(getAdapterFunction(doc2model, itemType), applyCast(getType(true, Document.class), value), null);
+			}
+		}
 
-		final boolean isList = isaParametrizedList(fieldType);
+		if (allocationMinimal && isList) {
+			if (isObjectId(modelField)) {
+				return applyFunction(addListHelper(helperName, typeForListOf(ObjectId.class), fieldType, CodeBlock.of("$L", id2string)), applyCast(getType(true, ObjectId.class), value));
+			} else if (isEnum(itemType)) {
+				return applyFunction(addListHelper(helperName, typeForListOf(Object.class), fieldType, CodeBlock.of("$L", obj2enum), itemType), applyCast(getType(true, Object.class), value));
+			} else if (context.getAdapters().containsKey(itemType)) {
+				return applyFunction(addListHelper(helperName, typeForListOf(Document.class), fieldType, getAdapterFunction(doc2model, itemType)), applyCast(getType(true, Document.class), value));
+			}
+		}
 
-		if (isFieldObjectId(modelField)) {
-			result = applyFunction(id2string, applyCast(getType(isList, ObjectId.class), result));
+		return super.buildDocFieldExtractor(docVar, modelField, fieldType);
+	}
+	/** Returns lazyList(list, value -> itemFunction(value)), or with itemType.class as the second argument, if given */
+	private CodeBlock applyLazyList(Object itemFunction, Object list, Type itemType) {
+		final String itemVar = "value";
+		final CodeBlock item = itemType == null
+			? applyFunction(itemFunction, itemVar)
+			: applyFunction(itemFunction, itemVar, itemType);
+		return CodeBlock.of("lazyList($L, $L -> $L)", list, itemVar, item);
+	}
 
-		} else if (containsEnum(fieldType)) {
-			result = applyFunction(obj2enum, applyCast(getType(isList, Object.class), result), getTypeOrTypeArgument(fieldType));
+	private String addListHelper(String name, Type inType, Type outType, Object itemFunction) {
+		return addListHelper(name, inType, outType, itemFunction, null);
+	}
 
-		} else {
-			// Model adapters
-			final Type itemType = getTypeOrTypeArgument(fieldType);
-			if (context.getAdapters().containsKey(itemType)) {
-				result = applyFunction(getAdapterFunction(doc2model, itemType), applyCast(getType(isList, Document.class), result));
-			} else {
-				result = applyCast(fieldType, result);
-			}
+	/**
+	 * Adds a helper method that converts a list in a plain loop, into a pre-sized list (see {@link #setAllocationMinimal}),
+	 * or in parallel if the list is big enough.
+	 * Each item is converted with the itemFunction, that receives the item (and itemType.class, if given).
+	 * Returns the name of the method.
+	 */
+	private String addListHelper(String name, Type inType, Type outType, Object itemFunction, Type itemType) {
+
+		final String inVar = "values";
+		final String itemVar = "value";
+		final CodeBlock item = itemType == null
+			? applyFunction(itemFunction, CodeBlock.of("$L.get(i)", inVar))
+			: applyFunction(itemFunction, CodeBlock.of("$L.get(i)", inVar), itemType);
+		final CodeBlock lambdaItem = itemType == null
+			? applyFunction(itemFunction, itemVar)
+			: applyFunction(itemFunction, itemVar, itemType);
+
+		helperMethods.put(name, MethodSpec.methodBuilder(name)
+			.addModifiers(Modifier.PRIVATE)
+			.returns(TypeName.get(outType))
+			.addParameter(TypeName.get(inType), inVar)
+			.addStatement("if ($L == null) return null", inVar)
+			.addStatement("final int size = $L.size()", inVar)
+			.addStatement("if (size >= getParallelThreshold()) return mapToList($L, $L -> $L)", inVar, itemVar, lambdaItem)
+			.addStatement("final $T result = new $T<>(size)", outType, ArrayList.class)
+			.beginControlFlow("for (int i = 0; i < size; i++)")
+			.addStatement("result.add($L)", item)
+			.endControlFlow()
+			.addStatement("return result")
+			.build());
+
+		return name;
+	}
+
+	/**
+	 * Adds the static methods that convert the given enum (and lists of it) to the stored value, with the given strategy.
+	 * The result is something like: String gender2code(Gender value), with a switch on the constants.
+	 * The list overload is only added if withList.
+	 * Returns the name of the methods.
+	 */
+	private String addEnumEncoder(Class<?> enumClass, EnumStrategy strategy, boolean withList) {
+
+		final String name = enumVarName(enumClass) + "2" + strategy.name().toLowerCase();
+		final Class<?> storedType = strategy == EnumStrategy.ORDINAL ? Integer.class : String.class;
+		final String valueVar = "value";
+
+		final MethodSpec.Builder single = MethodSpec.methodBuilder(name)
+			.addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+			.returns(storedType)
+			.addParameter(enumClass, valueVar)
+			.addStatement("if ($L == null) return null", valueVar);
+
+		switch (strategy) {
+			case NAME:
+				single.addStatement("return $L.name()", valueVar);
+				break;
+			case ORDINAL:
+				single.addStatement("return $L.ordinal()", valueVar);
+				break;
+			case CODE:
+				final Map<? extends Enum<?>, String> codes = getEnumCodes(enumClass);
+				single.beginControlFlow("switch ($L)", valueVar);
+				for (Object constant : enumClass.getEnumConstants()) {
+					single.addStatement("case $L: return $S", ((Enum<?>) constant).name(), codes.get(constant));
+				}
+				single.addStatement("default: throw new $T($S + $L)", IllegalArgumentException.class, "Unexpected value: ", valueVar);
+				single.endControlFlow();
+				break;
 		}
 
-		return result;
+		helperMethods.put(name + "(item)", single.build());
+		if (withList) helperMethods.put(name + "(list)", buildEnumListMethod(name, typeForListOf(enumClass), typeForListOf(Object.class)));
+		return name;
+	}
+
+	/**
+	 * Adds the static methods that convert the stored value (or list of them) to the given enum, with the given strategy.
+	 * The result is something like: Gender code2gender(Object value), with a switch on the codes,
+	 * or Gender ordinal2gender(Object value), that uses a static table of constants.
+	 * The list overload is only added if withList.
+	 * Returns the name of the methods.
+	 */
+	private String addEnumDecoder(Class<?> enumClass, EnumStrategy strategy, boolean withList) {
+
+		final String name = strategy.name().toLowerCase() + "2" + enumVarName(enumClass);
+		final String valueVar = "value";
+
+		final MethodSpec.Builder single = MethodSpec.methodBuilder(name)
+			.addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+			.returns(enumClass)
+			.addParameter(Object.class, valueVar)
+			.addStatement("if ($L == null) return null", valueVar);
+
+		switch (strategy) {
+			case ORDINAL:
+				final String tableName = CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, enumClass.getSimpleName()) + "_VALUES";
+				helperFields.put(tableName, FieldSpec.builder(ArrayTypeName.of(enumClass), tableName, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+					.initializer("$T.values()", enumClass)
+					.build());
+				single.addStatement("return $L[($T) $L]", tableName, Integer.class, valueVar);
+				break;
+			case NAME:
+			case CODE:
+				final Map<? extends Enum<?>, String> codes = strategy == EnumStrategy.CODE ? getEnumCodes(enumClass) : null;
+				single.beginControlFlow("switch (($T) $L)", String.class, valueVar);
+				for (Object constant : enumClass.getEnumConstants()) {
+					final String stored = codes == null ? ((Enum<?>) constant).name() : codes.get(constant);
+					single.addStatement("case $S: return $T.$L", stored, enumClass, ((Enum<?>) constant).name());
+				}
+				single.addStatement("default: throw new $T($S + $L)", IllegalArgumentException.class, "Unknown " + enumClass.getSimpleName() + " " + strategy.name().toLowerCase() + ": ", valueVar);
+				single.endControlFlow();
+				break;
+		}
+
+		helperMethods.put(name + "(item)", single.build());
+		if (withList) helperMethods.put(name + "(list)", buildEnumListMethod(name, typeForListOf(Object.class), typeForListOf(enumClass)));
+		return name;
+	}
+
+	/** Builds the list overload of an enum conversion, that calls the single item one in a loop */
+	private MethodSpec buildEnumListMethod(String name, Type inType, Type outType) {
+
+		final String valuesVar = "values";
+
+		return MethodSpec.methodBuilder(name)
+			.addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+			.returns(TypeName.get(outType))
+			.addParameter(TypeName.get(inType), valuesVar)
+			.addStatement("if ($L == null) return null", valuesVar)
+			.addStatement("final int size = $L.size()", valuesVar)
+			.addStatement("final $T result = new $T<>(size)", outType, ArrayList.class)
+			.beginControlFlow("for (int i = 0; i < size; i++)")
+			.addStatement("result.add($L($L.get(i)))", name, valuesVar)
+			.endControlFlow()
+			.addStatement("return result")
+			.build();
+	}
+
+	private Map<? extends Enum<?>, String> getEnumCodes(Class<?> enumClass) {
+		final Map<? extends Enum<?>, String> codes = enumCodes.get(enumClass);
+		if (codes == null) throw new IllegalArgumentException("Missing codes for enum " + enumClass.getName());
+		for (Object constant : enumClass.getEnumConstants()) {
+			if (codes.get(constant) == null) throw new IllegalArgumentException("Missing code for " + constant + " in enum " + enumClass.getName());
+		}
+		if (new HashSet<>(codes.values()).size() != codes.size()) throw new IllegalArgumentException("Duplicate codes for enum " + enumClass.getName());
+		return codes;
+	}
+
+	/** Name for variables and methods related to the given enum, e.g. "gender" for Person.Gender */
+	private String enumVarName(Class<?> enumClass) {
+		return StringUtils.uncapitalize(enumClass.getSimpleName());
 	}
 
 	private <T> Type getType(boolean inList, Class<T> clazz) {
@@ -328,37 +1024,45 @@ public class AdapterGenerator {
 		return new TypeToken<List<T>>(){}.where(new TypeParameter<T>() {}, clazz).getType();
 	}
 
-	private boolean isFieldObjectId(Field modelField) {
+	@Override
+	protected boolean isObjectId(Field modelField) {
 		final boolean result = isDocFieldObjectId(fieldNames.get(modelField.getName()));
-		if (result && !getTypeOrTypeArgument(modelField.getGenericType()).equals(String.class)) {
+		if (result && !itemType(modelField.getGenericType()).equals(String.class)) {
 			throw new IllegalArgumentException("Model field " + modelField.getName() + " must be String to be converted to ObjectId");
 		}
 		return result;
 	}
 
+	@Override
+	protected boolean isPacked(Field modelField) {
+		final boolean result = packedArrayDocFields.contains(fieldNames.get(modelField.getName()));
+		if (result && !isPrimitiveArray(modelField.getType())) {
+			throw new IllegalArgumentException("Model field " + modelField.getName() + " must be int[], long[] or double[] to be packed");
+		}
+		return result;
+	}
+
 	/**
 	 * We overload the adapter functions for one item and a list of items.
 	 * That's why we look for the Enum type inside a {@link List} too.
 	 * See {@link BaseAdapter#enum2obj} and {@link BaseAdapter#obj2enum}.
 	 */
 	private boolean containsEnum(Type type) {
-		return isEnum(getTypeOrTypeArgument(type));
+		return isEnum(itemType(type));
 	}
 
-	private boolean isEnum(Type typeArgument) {
+	@Override
+	protected boolean isEnum(Type typeArgument) {
 		return typeArgument instanceof Class && ((Class<?>) typeArgument).isEnum();
 	}
 
-	/**
-	 * We overload the adapter functions for one item and a list of items.
-	 * That's why we look for the parameter type inside a {@link List} too.
-	 * See {@link BaseAdapter#doc2model} and {@link BaseAdapter#model2doc}.
-	 */
-	private Type getTypeOrTypeArgument(Type type) {
-		return isaParametrizedList(type) ? getTypeArgument(type) : type;
+	@Override
+	protected Type itemType(Type type) {
+		return isList(type) ? getTypeArgument(type) : type;
 	}
 
-	private boolean isaParametrizedList(Type type) {
+	@Override
+	protected boolean isList(Type type) {
 		return type instanceof ParameterizedType && ((ParameterizedType) type).getRawType().equals(List.class);
 	}
 
@@ -366,14 +1070,41 @@ public class AdapterGenerator {
 		return ((ParameterizedType) type).getActualTypeArguments()[0];
 	}
 
+	@Override
+	protected TypeName typeName(Type type) {
+		return TypeName.get(type);
+	}
+
+	@Override
+	protected TypeName rawTypeName(Type type) {
+		if (type instanceof ParameterizedType) return TypeName.get(((ParameterizedType) type).getRawType());
+		if (type instanceof Class) return TypeName.get(type);
+		return ClassName.OBJECT;
+	}
+
+	@Override
+	protected Object adapterInstance(Type type) {
+		return context.getAdapters().containsKey(type) ? getAdapterInstance(type) : null;
+	}
+
+	/** Returns the adapter instance of the given type, checking that it was generated as a codec */
+	@Override
+	protected Object codecAdapterInstance(Type adaptedType) {
+		final TypeSpec adapterTypeSpec = context.getAdapters().get(adaptedType);
+		if (!AdapterGeneratorContext.isCodec(adapterTypeSpec)) throw new IllegalArgumentException("Adapter for type " + adaptedType + " must be generated as a codec too");
+		return CodeBlock.builder().add("$N.$L", adapterTypeSpec, instanceVar).build();
+	}
+
 	private Object getAdapterFunction(String functionName, Type adaptedType) {
 		final TypeSpec adapterTypeSpec = context.getAdapters().get(adaptedType);
 		if (adapterTypeSpec == null) throw new IllegalArgumentException("Unexpectedly, I can't find adapter for type: " + adaptedType);
 		return CodeBlock.builder().add("$N.$L.$L", adapterTypeSpec, instanceVar, functionName).build();
 	}
 
-	private CodeBlock applyFunction(Object functionName, Object arg) {
-		return CodeBlock.builder().add("$L($L)", functionName, arg).build();
+	private Object getAdapterInstance(Type adaptedType) {
+		final TypeSpec adapterTypeSpec = context.getAdapters().get(adaptedType);
+		if (adapterTypeSpec == null) throw new IllegalArgumentException("Unexpectedly, I can't find adapter for type: " + adaptedType);
+		return CodeBlock.builder().add("$N.$L", adapterTypeSpec, instanceVar).build();
 	}
 
 	private CodeBlock applyFunction(Object functionName, Object arg, Type type) {
@@ -1,41 +1,226 @@
 package com.codethen.mongo.adapter.generator;
 
-import com.squareup.javapoet.JavaFile;
-import com.squareup.javapoet.TypeSpec;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.squareup.javapoet.*;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.lang.model.element.Modifier;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
+import static java.util.stream.Collectors.toList;
+
 public class AdapterGeneratorContext {
 
     /** Path of source files where adapters will be put (e.g. "src/main/java")*/
     private final String sourcePath;
     /** Package of the generated adapters (e.g. "com.brand.project.mongo.adapters") */
     private final String packageName;
-    /** Known adapters for model classes. */
+    /** Known adapters for model classes. Adapters may be generated in parallel, see {@link #generateAll}. */
     private final Map<Class<?>, TypeSpec> adapters;
+    /** Generators registered with {@link #register}, by model class, waiting for {@link #generateAll} */
+    private final Map<Class<?>, AdapterGenerator> registered;
+    /** Keys of the adapters generated with {@link AdapterGenerator#setCompactKeys} */
+    private CompactKeys compactKeys;
 
     public AdapterGeneratorContext(String sourcePath, String packageName) {
         this.sourcePath = sourcePath;
         this.packageName = packageName;
-        this.adapters = new HashMap<>();
+        this.adapters = new ConcurrentHashMap<>();
+        this.registered = new LinkedHashMap<>();
     }
 
+    /** Builds and writes the adapter now. The adapters it depends on must be already created. */
     public <T> void createAdapter(AdapterGenerator adapterGenerator, Consumer<AdapterGenerator> config) {
+        adapterGenerator.setContext(this);
+        config.accept(adapterGenerator);
+        generate(adapterGenerator, true);
+        saveCompactKeys();
+    }
+
+    /** Configures the adapter, that will be built and written in {@link #generateAll} */
+    public void register(AdapterGenerator adapterGenerator, Consumer<AdapterGenerator> config) {
+        adapterGenerator.setContext(this);
+        config.accept(adapterGenerator);
+        registered.put(adapterGenerator.getModelClass(), adapterGenerator);
+    }
+
+    /**
+     * Generates the registered adapters, in the order given by their dependencies (see {@link AdapterGenerator#getDependencies}).
+     * Adapters whose dependencies are already generated are generated in parallel, in waves.
+     */
+    public void generateAll() {
+        buildRegistered(true);
+    }
+
+    /**
+     * Builds the registered adapters like {@link #generateAll}, but without writing them to the {@link #sourcePath}.
+     * Returns their files, e.g. to compile them at runtime (see {@link com.codethen.mongo.adapter.runtime.RuntimeAdapterCompiler}).
+     */
+    public List<JavaFile> buildAll() {
+        return buildRegistered(false);
+    }
+
+    private List<JavaFile> buildRegistered(boolean write) {
+
+        final List<JavaFile> files = new ArrayList<>();
+        final Map<Class<?>, Set<Type>> pending = new LinkedHashMap<>();
+        try {
+            for (AdapterGenerator generator : registered.values()) {
+                final Set<Type> dependencies = generator.getDependencies();
+                dependencies.retainAll(registered.keySet());
+                dependencies.remove(generator.getModelClass());
+                pending.put(generator.getModelClass(), dependencies);
+            }
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException("Problem building the adapter dependencies", e);
+        }
+
+        while (!pending.isEmpty()) {
+
+            final List<Class<?>> wave = pending.entrySet().stream()
+                .filter(e -> adapters.keySet().containsAll(e.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(toList());
+
+            if (wave.isEmpty()) {
+                throw new IllegalArgumentException("Cyclic dependencies between the adapters of " + pending.keySet());
+            }
+
+            files.addAll(wave.parallelStream()
+                .map(modelClass -> generate(registered.get(modelClass), write))
+                .collect(toList()));
+            wave.forEach(pending::remove);
+        }
+
+        registered.clear();
+        saveCompactKeys();
+        return files;
+    }
+
+    /**
+     * Generates a {@link CodecProvider} with all the adapters generated as codecs (see {@link AdapterGenerator#setGenerateCodec}),
+     * so typed collections like db.getCollection("people", Person.class) use them.
+     * The codec is found by comparing the class with each model class, without a map lookup.
+     * Call it after generating the adapters.
+     */
+    public void generateCodecProvider(String className) {
+
+        final String clazzVar = "clazz";
+        final TypeVariableName typeVar = TypeVariableName.get("T");
+        final TypeName codecType = ParameterizedTypeName.get(ClassName.get(Codec.class), typeVar);
+
+        final MethodSpec.Builder getBuilder = MethodSpec.methodBuilder("get")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .addTypeVariable(typeVar)
+            .returns(codecType)
+            .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), typeVar), clazzVar)
+            .addParameter(CodecRegistry.class, "registry");
+
+        adapters.entrySet().stream()
+            .filter(e -> isCodec(e.getValue()))
+            .sorted(Comparator.comparing(e -> e.getKey().getName()))
+            .forEach(e -> getBuilder.addStatement("if ($L == $T.class) return ($T) $N.INSTANCE", clazzVar, e.getKey(), codecType, e.getValue()));
+
+        final TypeSpec provider = TypeSpec.classBuilder(className)
+            .addJavadoc("Provides the adapters generated as codecs\n")
+            .addModifiers(Modifier.PUBLIC)
+            .addSuperinterface(CodecProvider.class)
+            .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+            .addField(FieldSpec.builder(ClassName.get(packageName, className), "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $L()", className)
+                .build())
+            .addMethod(getBuilder.addStatement("return null").build())
+            .build();
+
+        try {
+            writeIfChanged(JavaFile.builder(packageName, provider).build());
+        } catch (IOException e) {
+            throw new RuntimeException("Problem writing the codec provider", e);
+        }
+    }
+
+    /**
+     * Builds and writes a polymorphic adapter now. The adapters of its subclasses must be already created.
+     * It replaces the adapter of the base class in this context, so the fields of the base class in the adapters
+     * created afterwards (and the {@link #generateCodecProvider codec provider}) use it.
+     */
+    public void createPolymorphicAdapter(PolymorphicAdapterGenerator adapterGenerator, Consumer<PolymorphicAdapterGenerator> config) {
+        adapterGenerator.setContext(this);
+        config.accept(adapterGenerator);
+        try {
+            final TypeSpec adapterTypeSpec = adapterGenerator.build();
+            writeIfChanged(JavaFile.builder(packageName, adapterTypeSpec).build());
+            adapters.put(adapterGenerator.getBaseClass(), adapterTypeSpec);
+        } catch (Exception e) {
+            throw new RuntimeException("Problem building the polymorphic adapter", e);
+        }
+    }
+
+    /** Whether the adapter was generated as a {@link Codec} (see {@link AdapterGenerator#setGenerateCodec}) */
+    public static boolean isCodec(TypeSpec adapterTypeSpec) {
+        return adapterTypeSpec.methodSpecs.stream().anyMatch(m -> m.name.equals(AdapterGenerator.decodeField) || m.name.equals("decode"));
+    }
+
+    private void saveCompactKeys() {
+        if (compactKeys != null) compactKeys.save();
+    }
+
+    private JavaFile generate(AdapterGenerator adapterGenerator, boolean write) {
         try {
-            adapterGenerator.setContext(this);
-            config.accept(adapterGenerator);
             final TypeSpec adapterTypeSpec = adapterGenerator.build();
             adapters.put(adapterGenerator.getModelClass(), adapterTypeSpec);
-            JavaFile.builder(packageName, adapterTypeSpec).build().writeTo(new File(sourcePath));
+            final JavaFile javaFile = JavaFile.builder(packageName, adapterTypeSpec).build();
+            if (write) writeIfChanged(javaFile);
+            return javaFile;
         } catch (Exception e) {
             throw new RuntimeException("Problem building the adapter", e);
         }
     }
 
+    /**
+     * Writes the file only if its content changed, so its timestamp doesn't change
+     * and the code that depends on it doesn't need to be recompiled.
+     */
+    private void writeIfChanged(JavaFile javaFile) throws IOException {
+
+        final File file = new File(sourcePath, javaFile.packageName.replace('.', File.separatorChar)
+            + File.separator + javaFile.typeSpec.name + ".java");
+
+        if (file.exists()) {
+            final byte[] content = javaFile.toString().getBytes(StandardCharsets.UTF_8);
+            if (Files.asByteSource(file).hash(Hashing.sha256()).equals(Hashing.sha256().hashBytes(content))) {
+                return;
+            }
+        }
+
+        javaFile.writeTo(new File(sourcePath));
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
     public Map<Class<?>, TypeSpec> getAdapters() {
         return adapters;
     }
+
+    public CompactKeys getCompactKeys() {
+        return compactKeys;
+    }
+
+    /** Assigns and keeps the keys of the adapters generated with {@link AdapterGenerator#setCompactKeys}. It's saved after generating. */
+    public void setCompactKeys(CompactKeys compactKeys) {
+        this.compactKeys = compactKeys;
+    }
 }
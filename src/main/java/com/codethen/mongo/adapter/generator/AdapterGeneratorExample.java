@@ -1,8 +1,14 @@
 package com.codethen.mongo.adapter.generator;
 
+import com.codethen.mongo.adapter.bulk.AdapterBulkWriter;
+import com.codethen.mongo.adapter.bulk.BulkWriteTarget;
+import com.codethen.mongo.adapter.cursor.PrefetchingCursor;
+import com.codethen.mongo.adapter.dump.AdapterDump;
 import com.codethen.mongo.adapter.generator.sample.Address;
 import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import com.codethen.mongo.adapter.generator.sample.Measurement;
 import com.codethen.mongo.adapter.generator.sample.Person;
+import com.codethen.mongo.adapter.generator.sample.adapter.AdapterCodecProvider;
 import com.codethen.mongo.adapter.generator.sample.adapter.AddressAdapter;
 import com.codethen.mongo.adapter.generator.sample.adapter.AddressExtAdapter;
 import com.codethen.mongo.adapter.generator.sample.adapter.PersonAdapter;
@@ -14,14 +20,15 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import com.squareup.javapoet.CodeBlock;
 import org.bson.Document;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.bson.types.ObjectId;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
 
@@ -36,6 +43,7 @@ public class AdapterGeneratorExample {
 	public static void main(String[] args) throws Exception {
 
 		generateAdapters();
+		tryDump();
 		tryAdapters();
 	}
 
@@ -49,9 +57,16 @@ public class AdapterGeneratorExample {
 
 		final AdapterGeneratorContext context = new AdapterGeneratorContext(sourcePath, packageName);
 
+		// Keys assigned to the adapters generated with compact keys (see Measurement below)
+		context.setCompactKeys(new CompactKeys(new File("compact-keys.properties")));
+
+		// Adapters are registered first and generated at the end, with generateAll
+
 		/** {@link Address} is a simple class. We just define the fields. */
-		context.createAdapter(new AdapterGenerator(), a -> {
+		context.register(new AdapterGenerator(), a -> {
 			a.setModelClass(Address.class);
+			a.setGenerateCodec(true);
+			a.setGenerateLazy(true);
 			a.setFieldNames(fields(m -> m
 				.put("street", "str")
 				.put("number", "num")
@@ -62,9 +77,10 @@ public class AdapterGeneratorExample {
 		 * {@link AddressExt} is a subclass, so we indicate the superclass adapter {@link AddressAdapter}.
 		 * Note that the {@link AddressAdapter} must be already generated.
 		 */
-		context.createAdapter(new AdapterGenerator(), a -> {
+		context.register(new AdapterGenerator(), a -> {
 			a.setModelClass(AddressExt.class);
 			a.setAdapterSuperclass(AddressAdapter.class);
+			a.setGenerateCodec(true);
 			a.setFieldNames(fields(m -> m
 				.put("city", "city")
 			));
@@ -79,37 +95,12 @@ public class AdapterGeneratorExample {
 		 * - Special types like {@link ObjectId}, {@link Enum}
 		 * - Fields of other model classes like {@link Address} or {@link AddressExt}
 		 * - List fields (of all the previous types: basic, ObjectId, Enum)
+		 * Its generator has a custom mapping of the "number" field (see {@link PersonAdapterGenerator}).
 		 */
-		context.createAdapter(new AdapterGenerator() {
-
-			// These methods show a custom mapping. This should be rarely used.
-			// This is a weird example, just to show how you could write your custom mappings.
-			// We store a String field number as an Integer into the database.
-
-			@Override
-			public Object buildModelFieldExtractor(String modelVar, Field modelField) {
-
-				final Object result = super.buildModelFieldExtractor(modelVar, modelField);
-
-				// Example of custom mapping: convert from String to Integer
-				if (modelField.getName().equals("number"))
-					return "Integer.parseInt(" + result + ")";
-
-				return result;
-			}
-
-			@Override
-			public Object buildDocFieldExtractor(String docVar, Field modelField, Type fieldType) {
-
-				// Example of custom mapping: convert from Integer to String
-				if (modelField.getName().equals("number"))
-					return CodeBlock.builder().add("String.valueOf($L)", super.buildDocFieldExtractor(docVar, modelField, Object.class)).build();
-
-				return super.buildDocFieldExtractor(docVar, modelField, fieldType);
-			}
-		}, a -> {
+		context.register(new PersonAdapterGenerator(), a -> {
 
 			a.setModelClass(Person.class);
+			a.setGenerateCodec(true);
 
 			/**
 			 * Here we indicate the fields that should be persisted as {@link ObjectId}s.
@@ -118,6 +109,29 @@ public class AdapterGeneratorExample {
 			 */
 			a.setObjectIdDocFields(Arrays.asList(f.id, f.friendIds));
 
+			/**
+			 * Here we indicate how some {@link Enum} fields are stored. By default, by name.
+			 * The adapter will contain lookup tables for them, so no reflection is used.
+			 */
+			a.setEnumStrategy("gender", EnumStrategy.CODE);
+			a.setEnumCodes(Person.Gender.class, MapBuilder.<Person.Gender, String>linked()
+				.put(Person.Gender.MALE, "M")
+				.put(Person.Gender.FEMALE, "F")
+				.build());
+			a.setEnumStrategy("preferredGenders", EnumStrategy.ORDINAL);
+
+			/**
+			 * Projections for the queries that only need some fields.
+			 * This generates SUMMARY_PROJECTION and doc2modelSummary.
+			 */
+			a.addProjection("summary", Arrays.asList("name", "age", "gender"));
+
+			/**
+			 * This generates doc2modelLazy, that returns a Person that converts each field on the first call to its getter.
+			 * The otherAddresses are lazy too, since the {@link Address} adapter is generated with this option.
+			 */
+			a.setGenerateLazy(true);
+
 			a.setFieldNames(fields(m -> m
 				.put("id", f.id)
 				.put("friendIds", f.friendIds)
@@ -132,6 +146,47 @@ public class AdapterGeneratorExample {
 				.put("otherAddresses", "other")
 			));
 		});
+
+		/**
+		 * {@link Measurement} has primitive array fields (int[], long[], double[]), stored as BSON arrays of numbers.
+		 * The values are stored packed in a Binary, which is smaller and faster for big series (but can't be queried).
+		 * The codec reads and writes the arrays without boxing each number.
+		 */
+		context.register(new AdapterGenerator(), a -> {
+			a.setModelClass(Measurement.class);
+			a.setGenerateCodec(true);
+			a.setPackedArrayFields(Collections.singletonList("vals"));
+			a.setCompactKeys(true); // Stored as a, b... except _id. The names below are only used to configure the generator.
+			a.setFieldNames(fields(m -> m
+				.put("id", "_id")
+				.put("sensor", "sensor")
+				.put("times", "times")
+				.put("counts", "counts")
+				.put("values", "vals")
+			));
+		});
+
+		/**
+		 * Generates the registered adapters, after the adapters they depend on (independent ones in parallel).
+		 * Files that didn't change are not written again.
+		 */
+		context.generateAll();
+
+		/**
+		 * Addresses of both classes in the same field or collection. The class is stored in the discriminator _t,
+		 * and addresses stored without it are read as {@link Address}. The provider below uses this adapter for {@link Address}.
+		 */
+		context.createPolymorphicAdapter(new PolymorphicAdapterGenerator(), a -> {
+			a.setBaseClass(Address.class);
+			a.addSubclass(Address.class, "a");
+			a.addSubclass(AddressExt.class, "ext");
+			a.setDefaultClass(Address.class);
+		});
+
+		// Codec provider with all the adapters generated as codecs, for typed collections (see tryAdapterCodec)
+		context.generateCodecProvider("AdapterCodecProvider");
+
+		System.out.print(context.getCompactKeys().report());
 	}
 
 	/**
@@ -155,6 +210,10 @@ public class AdapterGeneratorExample {
 		peopleCollection.drop();
 		peopleCollection.insertMany(people.stream().map(model2doc::apply).collect(toList()));
 
+		// For many models, AdapterBulkWriter converts them in parallel and writes them in batches
+		final AdapterBulkWriter<Person> bulkWriter = new AdapterBulkWriter<>(PersonAdapter.INSTANCE, BulkWriteTarget.of(db.getCollection("people_bulk")));
+		bulkWriter.write(people.stream());
+
 		// For convenience, you can use an alias
 		final PersonAdapter.Fields pf = PersonAdapter.fields;
 		final AddressExtAdapter.Fields af = AddressExtAdapter.fields;
@@ -182,6 +241,55 @@ public class AdapterGeneratorExample {
 				"Data from db: " + dataFromDb + "\n\n" +
 				"Data expected: " + dataExpected);
 		}
+
+		findSummaries(peopleCollection).forEach(p -> printPerson(p));
+
+		// When only some getters are called, doc2modelLazy avoids converting the other fields
+		final Person lazyPerson = PersonAdapter.INSTANCE.doc2modelLazy(peopleCollection.find().first());
+		System.out.println("Name of the lazy person: " + lazyPerson.getName());
+
+		// To scan a whole collection, PrefetchingCursor decodes batches in parallel while the next ones are fetched
+		try (PrefetchingCursor<Person> cursor = new PrefetchingCursor<>(peopleCollection.find().iterator(), PersonAdapter.INSTANCE)) {
+			cursor.forEachRemaining(p -> printPerson(p));
+		}
+
+		// Update only the fields that changed (dotted paths are used for nested models)
+		final Person personChanged = gson.fromJson(gson.toJson(personExpected), Person.class);
+		personChanged.setAge(21);
+		personChanged.getAddress().setCity("Girona");
+		peopleCollection.updateOne(
+			queryBy(pf.id, new ObjectId(personChanged.getId())),
+			PersonAdapter.INSTANCE.model2update(personExpected, personChanged));
+	}
+
+	/**
+	 * Example of a dump of models to a file and back, without a server.
+	 */
+	private static void tryDump() throws IOException {
+
+		final List<Person> people = Arrays.asList(
+			createSamplePerson(p -> p.setName("D1")),
+			createSamplePerson(p -> p.setName("D2"))
+		);
+
+		final Path file = Files.createTempFile("people", ".bson");
+		final AdapterDump<Person> dump = new AdapterDump<>(PersonAdapter.INSTANCE);
+		dump.write(file, people.stream());
+
+		// The file is split into segments, decoded in parallel
+		dump.read(file).forEach(p -> printPerson(p));
+		Files.delete(file);
+	}
+
+	/**
+	 * Example of a query that only needs some fields, using a projection.
+	 */
+	private static List<Person> findSummaries(MongoCollection<Document> peopleCollection) {
+		return peopleCollection
+			.find()
+			.projection(PersonAdapter.SUMMARY_PROJECTION)
+			.map(PersonAdapter.INSTANCE::doc2modelSummary)
+			.into(new ArrayList<>());
 	}
 
 	private static Document queryBy(String key, Object value) {
@@ -210,6 +318,35 @@ public class AdapterGeneratorExample {
 		});
 	}
 
+	/**
+	 * Same as {@link #tryCodecRegistry()} but using the generated adapters as codecs.
+	 * No reflection is used, and no intermediate {@link Document} is created.
+	 */
+	private static void tryAdapterCodec() {
+
+		// The generated provider has all the adapters generated as codecs, e.g. fromCodecs(PersonAdapter.INSTANCE)
+		final CodecRegistry adapterCodecRegistry = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+			fromProviders(AdapterCodecProvider.INSTANCE));
+
+		final MongoDatabase db = getMongoDatabase("adapter" + "generator" + "example").withCodecRegistry(adapterCodecRegistry);
+		final MongoCollection<Person> people = db.getCollection("people_adapter_codec", Person.class);
+
+		final Person person = createSamplePerson(p -> {});
+
+		people.insertOne(person);
+
+		people.find().forEach((Consumer<? super Person>) p -> {
+			printPerson(p);
+		});
+
+		// Addresses of both classes in the same collection, read back with their class
+		final MongoCollection<Address> addresses = db.getCollection("addresses_adapter_codec", Address.class);
+		addresses.insertMany(Arrays.asList(person.getAddress(), person.getOtherAddresses().get(0)));
+		addresses.find().forEach((Consumer<? super Address>) a -> {
+			System.out.println(a.getClass().getSimpleName() + ": " + gson.toJson(a));
+		});
+	}
+
 	private static MongoDatabase getMongoDatabase(String dbName) {
 		final MongoClient mongoClient = new MongoClient();
 		return mongoClient.getDatabase(dbName);
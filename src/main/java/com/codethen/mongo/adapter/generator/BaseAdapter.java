@@ -1,14 +1,54 @@
 package com.codethen.mongo.adapter.generator;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * This class provides some utility methods for convenience. These methods could be overridden as necessary.
  */
 public abstract class BaseAdapter<M, D> implements Adapter<M, D> {
 
+	/** Cache of enum constants, since {@link Class#getEnumConstants()} clones the array on every call */
+	private static final ClassValue<Object[]> enumConstants = new ClassValue<Object[]>() {
+		@Override
+		protected Object[] computeValue(Class<?> type) {
+			return type.getEnumConstants();
+		}
+	};
+
+	/** Lists with at least this size are converted in parallel. By default, lists are always converted sequentially. */
+	private int parallelThreshold = Integer.MAX_VALUE;
+
+	/** Pool used to convert lists in parallel */
+	private ForkJoinPool parallelPool = ForkJoinPool.commonPool();
+
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Lists with at least this size will be converted in parallel, using the {@link #setParallelPool parallel pool}.
+	 * Useful for documents with very large embedded arrays. The order of the elements is kept.
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public ForkJoinPool getParallelPool() {
+		return parallelPool;
+	}
+
+	public void setParallelPool(ForkJoinPool parallelPool) {
+		this.parallelPool = parallelPool;
+	}
+
+
 	public List<D> model2doc(List<M> models) {
 		return mapToList(models, this::model2doc);
 	}
@@ -38,10 +78,90 @@ public abstract class BaseAdapter<M, D> implements Adapter<M, D> {
 	}
 
 	public <T extends Enum<T>> T enumFromOrdinal(Integer ordinal, Class<T> clazz) {
-		return ordinal == null ? null : clazz.getEnumConstants()[ordinal];
+		return ordinal == null ? null : clazz.cast(enumConstants.get(clazz)[ordinal]);
 	}
 
 	public <I,O> List<O> mapToList(List<I> list, Function<I,O> mapper) {
-		return list == null ? null : list.stream().map(mapper).collect(Collectors.toList());
+		if (list == null) return null;
+		if (list.size() >= parallelThreshold) return mapToListInParallel(list, mapper);
+		final List<O> result = new ArrayList<>(list.size());
+		for (I item : list) {
+			result.add(mapper.apply(item));
+		}
+		return result;
+	}
+
+	/**
+	 * Like {@link #mapToList}, but reusing the target list and its items: each item is converted with the previous item
+	 * at the same index (or null), and the target is refilled. If the target is not an {@link ArrayList}, a new one is created.
+	 */
+	public <I,O> List<O> refillList(List<I> list, List<O> target, BiFunction<I,O,O> mapper) {
+		if (list == null) return null;
+		final int size = list.size();
+		final int previousSize = target == null ? 0 : target.size();
+		final List<O> result = target instanceof ArrayList ? target : new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final O item = mapper.apply(list.get(i), i < previousSize ? target.get(i) : null);
+			if (i < result.size()) result.set(i, item); else result.add(item);
+		}
+		if (result.size() > size) result.subList(size, result.size()).clear();
+		return result;
+	}
+
+	/** Like {@link #mapToList}, but each item is converted on its first access. See {@link LazyList}. */
+	public <I,O> List<O> lazyList(List<I> list, Function<I,O> mapper) {
+		return list == null ? null : new LazyList<>(list, mapper);
+	}
+
+	/**
+	 * The result is an {@link ArrayList}, like the one of the sequential conversion, since it's set in a model
+	 * that may modify it (and {@link #refillList} reuses it). The tasks set the items in place, so there's no copy.
+	 */
+	private <I,O> List<O> mapToListInParallel(List<I> list, Function<I,O> mapper) {
+		final List<I> input = list instanceof RandomAccess ? list : new ArrayList<>(list);
+		final List<O> output = new ArrayList<>(input.size());
+		for (int i = 0; i < input.size(); i++) output.add(null);
+		final int granularity = Math.max(1, input.size() / (parallelPool.getParallelism() * 4));
+		parallelPool.invoke(new MapTask<>(input, mapper, output, 0, output.size(), granularity));
+		return output;
+	}
+
+	/**
+	 * Converts a range of the input list into the same range of the output list, splitting it while it's bigger than the granularity.
+	 * Each task sets different indexes of the output, whose size doesn't change.
+	 */
+	private static class MapTask<I,O> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<I> input;
+		private final Function<I,O> mapper;
+		private final List<O> output;
+		private final int from;
+		private final int to;
+		private final int granularity;
+
+		MapTask(List<I> input, Function<I,O> mapper, List<O> output, int from, int to, int granularity) {
+			this.input = input;
+			this.mapper = mapper;
+			this.output = output;
+			this.from = from;
+			this.to = to;
+			this.granularity = granularity;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= granularity) {
+				for (int i = from; i < to; i++) {
+					output.set(i, mapper.apply(input.get(i)));
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(
+					new MapTask<>(input, mapper, output, from, middle, granularity),
+					new MapTask<>(input, mapper, output, middle, to, granularity));
+			}
+		}
 	}
 }
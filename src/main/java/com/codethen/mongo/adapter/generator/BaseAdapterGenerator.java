@@ -0,0 +1,778 @@
+package com.codethen.mongo.adapter.generator;
+
+import com.codethen.mongo.adapter.metrics.AdapterMetrics;
+import com.squareup.javapoet.*;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import javax.lang.model.element.Modifier;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Code generation shared by {@link AdapterGenerator} (with reflection over compiled classes)
+ * and the annotation processor (with the source elements of the models).
+ *
+ * It builds the members of the adapter, and the conversion of each field with the default options.
+ * The subclasses describe the fields of the model (F) and their types (T), and override the per-field methods to add their own options.
+ */
+public abstract class BaseAdapterGenerator<F, T> {
+
+	/** Variable that contains a singleton instance of the adapter */
+	protected final static String instanceVar = "INSTANCE";
+
+	protected final static String typeVar = "T";
+
+	/** Class with the document field names, and the static field with its instance */
+	protected final static String fieldsClassName = "Fields";
+	protected final static String fieldsField = "fields";
+
+	/**
+	 * Names of methods defined in {@link BaseDocumentAdapter}.
+	 * They can be used as helpers to generate code.
+	 */
+	protected final static String appendTo = "appendTo";
+	protected final static String model2doc = "model2doc";
+	protected final static String doc2model = "doc2model";
+	protected final static String obj2enum = "obj2enum";
+	protected final static String enum2obj = "enum2obj";
+	protected final static String string2id = "string2id";
+	protected final static String id2string = "id2string";
+	protected final static String appendUpdate = "appendUpdate";
+	protected final static String encodeFields = "encodeFields";
+	protected final static String decodeField = "decodeField";
+
+	/** Types that {@link BaseCodecAdapter} encodes with an encodeField overload, and how they are read */
+	private final static Map<TypeName, Function<String, CodeBlock>> codecReaders = new HashMap<>();
+	static {
+		codecReaders.put(ClassName.get(String.class), r -> CodeBlock.of("$L.readString()", r));
+		codecReaders.put(TypeName.INT, r -> CodeBlock.of("$L.readInt32()", r));
+		codecReaders.put(TypeName.INT.box(), r -> CodeBlock.of("$L.readInt32()", r));
+		codecReaders.put(TypeName.LONG, r -> CodeBlock.of("$L.readInt64()", r));
+		codecReaders.put(TypeName.LONG.box(), r -> CodeBlock.of("$L.readInt64()", r));
+		codecReaders.put(TypeName.DOUBLE, r -> CodeBlock.of("$L.readDouble()", r));
+		codecReaders.put(TypeName.DOUBLE.box(), r -> CodeBlock.of("$L.readDouble()", r));
+		codecReaders.put(TypeName.BOOLEAN, r -> CodeBlock.of("$L.readBoolean()", r));
+		codecReaders.put(TypeName.BOOLEAN.box(), r -> CodeBlock.of("$L.readBoolean()", r));
+		codecReaders.put(ClassName.get(Date.class), r -> CodeBlock.of("new $T($L.readDateTime())", Date.class, r));
+		codecReaders.put(ClassName.get(ObjectId.class), r -> CodeBlock.of("$L.readObjectId()", r));
+	}
+
+	/** Primitive arrays supported, and the suffix of their helpers, e.g. obj2ints and readInts for int[] */
+	private final static Map<TypeName, String> primitiveArrays = new HashMap<>();
+	static {
+		primitiveArrays.put(ArrayTypeName.of(TypeName.INT), "ints");
+		primitiveArrays.put(ArrayTypeName.of(TypeName.LONG), "longs");
+		primitiveArrays.put(ArrayTypeName.of(TypeName.DOUBLE), "doubles");
+	}
+
+	/** Name of the variable for the model object */
+	protected final static String modelVar = "model";
+
+	/** Name of the variable for the {@link Document} object */
+	protected final static String docVar = "doc";
+
+	/** Name of the variable for the model to fill, in doc2model(doc, target) */
+	protected final static String targetVar = "target";
+
+	/** Names of the variables used in {@link BaseDocumentAdapter#appendUpdate} */
+	protected final static String beforeVar = "before";
+	protected final static String afterVar = "after";
+	protected final static String setVar = "set";
+	protected final static String unsetVar = "unset";
+	protected final static String prefixVar = "prefix";
+
+	/** Names of the variables used in {@link BaseDocumentAdapter#validate} */
+	protected final static String violationsVar = "violations";
+
+	/** Names of the variables used in the {@link org.bson.codecs.Codec} methods */
+	protected final static String writerVar = "writer";
+	protected final static String readerVar = "reader";
+	protected final static String ctxVar = "ctx";
+	protected final static String docFieldVar = "docField";
+
+	/** Name of the variable with the start time, when generating metrics */
+	protected final static String startVar = "start";
+
+
+	// --- What the subclasses know about the model ---
+
+	/** Name of the adapter class */
+	protected abstract ClassName getAdapterClassName();
+
+	/** Name of the superclass of the adapter, e.g. {@link BaseDocumentAdapter} or the adapter of the model superclass */
+	protected abstract ClassName getAdapterSuperclassName();
+
+	protected abstract TypeName getModelTypeName();
+
+	/** Mapped fields of the model, in the order of the generated code */
+	protected abstract List<F> getModelFields();
+
+	/** Whether the adapter superclass has its own doc2model(doc, target) to call with super (see {@link BaseDocumentAdapter#refillTarget}) */
+	protected abstract boolean superclassRefills();
+
+	/** Whether the adapter is also generated as a {@link org.bson.codecs.Codec}. See {@link BaseCodecAdapter}. */
+	public abstract boolean isGenerateCodec();
+
+	/** Whether the conversions record {@link AdapterMetrics} */
+	public boolean isGenerateMetrics() {
+		return false;
+	}
+
+	public Class<Document> getDocClass() {
+		return Document.class;
+	}
+
+	/** Name of the model field, also used for the field of the Fields class */
+	protected abstract String name(F field);
+
+	/** Name of the field in the document */
+	protected abstract String storedName(F field);
+
+	protected abstract T fieldType(F field);
+
+	/** Whether the model field is a String (or a list of them) stored as an {@link ObjectId}. It throws if it's another type. */
+	protected abstract boolean isObjectId(F field);
+
+	/** Whether the model field is a primitive array stored as a packed Binary. It throws if it's another type. */
+	protected abstract boolean isPacked(F field);
+
+	protected abstract TypeName typeName(T type);
+
+	/** Type of the erasure of the given type, for the class literals */
+	protected abstract TypeName rawTypeName(T type);
+
+	protected abstract boolean isList(T type);
+
+	/**
+	 * We overload the adapter functions for one item and a list of items.
+	 * That's why we look for the parameter type inside a {@link List} too.
+	 * See {@link BaseAdapter#doc2model} and {@link BaseAdapter#model2doc}.
+	 */
+	protected abstract T itemType(T type);
+
+	protected abstract boolean isEnum(T type);
+
+	/** The instance of the adapter of the given type, e.g. AddressAdapter.INSTANCE, or null if it's not a model with an adapter */
+	protected abstract Object adapterInstance(T type);
+
+	/** Same as {@link #adapterInstance}, but it throws if the adapter isn't generated as a codec */
+	protected abstract Object codecAdapterInstance(T type);
+
+
+	// --- The adapter ---
+
+	/**
+	 * Builds the adapter with the Fields class, the INSTANCE and the conversions of {@link BaseDocumentAdapter},
+	 * then the members of {@link #addMembers}, and then the methods of the codec (if generated).
+	 */
+	protected TypeSpec.Builder buildAdapter() {
+
+		final ClassName adapterName = getAdapterClassName();
+		final TypeSpec fieldsTypeSpec = buildFieldsClass();
+
+		final TypeSpec.Builder adapterBuilder = TypeSpec.classBuilder(adapterName)
+			.addModifiers(Modifier.PUBLIC)
+			.addTypeVariable(TypeVariableName.get(typeVar).withBounds(getModelTypeName()))
+			.superclass(ParameterizedTypeName.get(getAdapterSuperclassName(), ClassName.bestGuess(typeVar)))
+			.addAnnotation(AnnotationSpec.builder(SuppressWarnings.class).addMember("value", "$S", "unchecked").build())
+			.addType(fieldsTypeSpec)
+			.addField(FieldSpec
+				.builder(ClassName.bestGuess(fieldsClassName), fieldsField, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+				.initializer("new $N()", fieldsTypeSpec)
+				.build())
+			.addField(FieldSpec.builder(ParameterizedTypeName.get(adapterName, getModelTypeName()), instanceVar, Modifier.PUBLIC, Modifier.FINAL, Modifier.STATIC)
+				.initializer("new $L<>()", adapterName.simpleName())
+				.build())
+			.addMethod(build_newModelInstance())
+			.addMethod(build_model2doc())
+			.addMethod(build_doc2model())
+			.addMethod(build_doc2modelRefill())
+			.addMethod(build_appendUpdate())
+			.addMethod(build_validate());
+
+		addMembers(adapterBuilder);
+
+		if (isGenerateCodec()) {
+			adapterBuilder
+				.addMethod(build_getEncoderClass())
+				.addMethod(build_encodeFields())
+				.addMethod(build_decodeField());
+		}
+
+		return adapterBuilder;
+	}
+
+	/** Adds the members of the options of the subclass, before the methods of the codec */
+	protected void addMembers(TypeSpec.Builder adapterBuilder) {
+	}
+
+	/** Builds the class that will contain a String field with the document field name of each model field */
+	protected TypeSpec buildFieldsClass() {
+
+		final TypeSpec.Builder fieldsBuilder = TypeSpec.classBuilder(fieldsClassName)
+			.superclass(getAdapterSuperclassName().nestedClass(fieldsClassName))
+			.addModifiers(Modifier.PUBLIC, Modifier.STATIC);
+
+		for (F field : getModelFields()) {
+			fieldsBuilder.addField(buildFieldsField(field));
+		}
+
+		return fieldsBuilder.build();
+	}
+
+	protected FieldSpec buildFieldsField(F field) {
+		return FieldSpec.builder(String.class, name(field), Modifier.PUBLIC, Modifier.FINAL)
+			.initializer("$S", storedName(field))
+			.build();
+	}
+
+	protected MethodSpec build_newModelInstance() {
+
+		final ClassName returnType = ClassName.bestGuess(typeVar);
+
+		return MethodSpec.methodBuilder("newModelInstance")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(returnType)
+			.addStatement("return ($T) new $T()", returnType, getModelTypeName())
+			.build();
+	}
+
+	protected MethodSpec build_model2doc() {
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(model2doc)
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(getDocClass())
+			.addParameter(ClassName.bestGuess(typeVar), modelVar);
+
+		if (isGenerateMetrics()) {
+			methodBuilder
+				.addStatement("final long $L = startMetrics($L)", startVar, modelVar)
+				.beginControlFlow("try");
+		}
+
+		methodBuilder
+			.addStatement("final $T $L = super.$L($L)", getDocClass(), docVar, model2doc, modelVar)
+			.addStatement("if ($L == null) return null", docVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addStatement(buildModelFieldExtractStatement(docVar, modelVar, field));
+		}
+
+		if (isGenerateMetrics()) methodBuilder.addStatement(buildRecordMetricsStatement(AdapterMetrics.Operation.MODEL2DOC));
+		methodBuilder.addStatement("return $L", docVar);
+
+		if (isGenerateMetrics()) addStopMetrics(methodBuilder);
+
+		return methodBuilder.build();
+	}
+
+	protected MethodSpec build_doc2model() {
+
+		final ClassName returnType = ClassName.bestGuess(typeVar);
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(doc2model)
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(returnType)
+			.addParameter(getDocClass(), docVar);
+
+		if (isGenerateMetrics()) {
+			methodBuilder
+				.addStatement("final long $L = startMetrics($L)", startVar, docVar)
+				.beginControlFlow("try");
+		}
+
+		methodBuilder
+			.addStatement("final $T $L = super.$L($L)", returnType, modelVar, doc2model, docVar)
+			.addStatement("if ($L == null) return null", modelVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addStatement(buildDocFieldExtractStatement(modelVar, docVar, field));
+		}
+
+		if (isGenerateMetrics()) methodBuilder.addStatement(buildRecordMetricsStatement(AdapterMetrics.Operation.DOC2MODEL));
+		methodBuilder.addStatement("return $L", modelVar);
+
+		if (isGenerateMetrics()) addStopMetrics(methodBuilder);
+
+		return methodBuilder.build();
+	}
+
+	/**
+	 * Builds doc2model(doc, target), that sets all the fields of the target, see {@link BaseDocumentAdapter#doc2model(Document, Object)}.
+	 * The root adapter starts with refillTarget, the others with super.
+	 */
+	protected MethodSpec build_doc2modelRefill() {
+
+		final ClassName returnType = ClassName.bestGuess(typeVar);
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(doc2model)
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(returnType)
+			.addParameter(getDocClass(), docVar)
+			.addParameter(returnType, targetVar)
+			.addStatement("final $T $L = $L($L, $L)", returnType, modelVar, superclassRefills() ? "super." + doc2model : "refillTarget", docVar, targetVar)
+			.addStatement("if ($L == null) return null", modelVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addStatement("$L.$L($L)", modelVar, setterName(field), buildDocFieldRefiller(field));
+		}
+
+		return methodBuilder
+			.addStatement("return $L", modelVar)
+			.build();
+	}
+
+	/**
+	 * Records the metrics only in the outermost call, not in the superclass adapters called with super
+	 * (see {@link BaseDocumentAdapter#startMetrics}), so each conversion is recorded once.
+	 */
+	private CodeBlock buildRecordMetricsStatement(AdapterMetrics.Operation operation) {
+		return CodeBlock.of("recordMetrics($T.$L, $L, $L)", AdapterMetrics.Operation.class, operation, startVar, docVar);
+	}
+
+	/** Ends the conversion in a finally block, so it's not left as being measured if it throws (see {@link BaseDocumentAdapter#stopMetrics}) */
+	private void addStopMetrics(MethodSpec.Builder methodBuilder) {
+		methodBuilder
+			.nextControlFlow("finally")
+			.addStatement("stopMetrics($L)", startVar)
+			.endControlFlow();
+	}
+
+	protected MethodSpec build_appendUpdate() {
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(appendUpdate)
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.addParameter(getDocClass(), setVar)
+			.addParameter(getDocClass(), unsetVar)
+			.addParameter(String.class, prefixVar)
+			.addParameter(ClassName.bestGuess(typeVar), beforeVar)
+			.addParameter(ClassName.bestGuess(typeVar), afterVar)
+			.addStatement("super.$L($L, $L, $L, $L, $L)", appendUpdate, setVar, unsetVar, prefixVar, beforeVar, afterVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addCode(buildUpdateFieldStatement(beforeVar, afterVar, field));
+		}
+
+		return methodBuilder.build();
+	}
+
+	protected MethodSpec build_validate() {
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("validate")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.addParameter(getDocClass(), docVar)
+			.addParameter(String.class, prefixVar)
+			.addParameter(ParameterizedTypeName.get(List.class, String.class), violationsVar)
+			.addStatement("super.validate($L, $L, $L)", docVar, prefixVar, violationsVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addCode(buildValidateFieldStatement(violationsVar, field));
+		}
+
+		return methodBuilder.build();
+	}
+
+	protected MethodSpec build_getEncoderClass() {
+
+		final TypeName returnType = ParameterizedTypeName.get(ClassName.get(Class.class), ClassName.bestGuess(typeVar));
+
+		return MethodSpec.methodBuilder("getEncoderClass")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(returnType)
+			.addStatement("return ($T) $T.class", returnType, getModelTypeName())
+			.build();
+	}
+
+	protected MethodSpec build_encodeFields() {
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(encodeFields)
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.addParameter(BsonWriter.class, writerVar)
+			.addParameter(ClassName.bestGuess(typeVar), modelVar)
+			.addParameter(EncoderContext.class, ctxVar)
+			.addStatement("super.$L($L, $L, $L)", encodeFields, writerVar, modelVar, ctxVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addStatement(buildCodecFieldEncodeStatement(writerVar, modelVar, field));
+		}
+
+		return methodBuilder.build();
+	}
+
+	protected MethodSpec build_decodeField() {
+
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(decodeField)
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(boolean.class)
+			.addParameter(BsonReader.class, readerVar)
+			.addParameter(String.class, docFieldVar)
+			.addParameter(ClassName.bestGuess(typeVar), modelVar)
+			.addParameter(DecoderContext.class, ctxVar)
+			.beginControlFlow("switch ($L)", docFieldVar);
+
+		for (F field : getModelFields()) {
+			methodBuilder
+				.addCode("case $S:\n", storedName(field))
+				.addCode(CodeBlock.builder().indent()
+					.addStatement(buildCodecFieldDecodeStatement(modelVar, readerVar, field))
+					.addStatement("return true")
+					.unindent().build());
+		}
+
+		return methodBuilder
+			.endControlFlow()
+			.addStatement("return super.$L($L, $L, $L, $L)", decodeField, readerVar, docFieldVar, modelVar, ctxVar)
+			.build();
+	}
+
+
+	// --- The conversion of each field ---
+
+	/**
+	 * Generates the statement to set the given docVar field into the modelVar.
+	 * The result is something like: append(doc, Fields.someField, model.getSomeField())
+	 * Usually you don't need to override this method, but you could do it in some special cases.
+	 * It's more probable that you want to override {@link #buildModelFieldExtractor}.
+	 */
+	public CodeBlock buildModelFieldExtractStatement(String docVar, String modelVar, F modelField) {
+		return CodeBlock.builder().add("$L($L, $L.$L, $L)",
+			appendTo, docVar, fieldsField, name(modelField), buildModelFieldExtractor(modelVar, modelField)).build();
+	}
+
+	/**
+	 * Generates the statement to set the given docVar field into the modelVar.
+	 * The result is something like: model.setSomeField(doc.get(Fields.someField))
+	 * Usually you don't need to override this method, but you could do it in some special cases.
+	 * It's more probable that you want to override {@link #buildDocFieldExtractor}.
+	 */
+	public CodeBlock buildDocFieldExtractStatement(String modelVar, String docVar, F modelField) {
+		return CodeBlock.builder().add("$L.$L($L)", modelVar, setterName(modelField), buildDocFieldExtractor(docVar, modelField, fieldType(modelField))).build();
+	}
+
+	/**
+	 * Generates the code to extract the given field from the modelVar.
+	 * The result is something like this for basic types: model.getSomeField().
+	 * For some types an adapter function is applied, e.g. enum2obj(model.getSomeField())
+	 *
+	 * You may override this method in some cases. Return any object that can be converted to a String.
+	 * See: https://github.com/square/javapoet#l-for-literals
+	 */
+	public Object buildModelFieldExtractor(String modelVar, F modelField) {
+
+		final T fieldType = fieldType(modelField);
+		final CodeBlock getter = buildModelFieldGetter(modelVar, modelField);
+
+		if (isObjectId(modelField)) {
+			return applyFunction(string2id, getter);
+		} else if (isEnum(itemType(fieldType))) {
+			return applyFunction(enum2obj, getter);
+		} else if (isPrimitiveArray(fieldType)) {
+			return applyFunction(isPacked(modelField) ? "array2binary" : "array2list", getter);
+		} else if (adapterInstance(itemType(fieldType)) != null) {
+			return CodeBlock.of("$L.$L($L)", adapterInstance(itemType(fieldType)), model2doc, getter);
+		} else {
+			return getter;
+		}
+	}
+
+	/**
+	 * Generates the code to extract the given field from the docVar, converted to the fieldType.
+	 * The result is something like this for basic types: (Integer) doc.get(Fields.someField).
+	 * For some types an adapter function is applied, e.g. obj2enum(doc.get(Fields.someField), SomeEnum.class)
+	 *
+	 * You may override this method in some cases. Return any object that can be converted to a String.
+	 * See: https://github.com/square/javapoet#l-for-literals
+	 */
+	public Object buildDocFieldExtractor(String docVar, F modelField, T fieldType) {
+
+		final boolean isList = isList(fieldType);
+		final T itemType = itemType(fieldType);
+		final CodeBlock value = CodeBlock.of("$L.get($L.$L)", docVar, fieldsField, name(modelField));
+
+		if (isObjectId(modelField)) {
+			return applyFunction(id2string, applyCast(listOrItem(isList, ClassName.get(ObjectId.class)), value));
+		} else if (isEnum(itemType)) {
+			return CodeBlock.of("$L($L, $T.class)", obj2enum, applyCast(listOrItem(isList, ClassName.OBJECT), value), rawTypeName(itemType));
+		} else if (isPrimitiveArray(fieldType)) {
+			return applyFunction("obj2" + primitiveArrays.get(typeName(fieldType)), value);
+		} else if (adapterInstance(itemType) != null) {
+			return CodeBlock.of("$L.$L($L)", adapterInstance(itemType), doc2model, applyCast(listOrItem(isList, ClassName.get(Document.class)), value));
+		} else {
+			return applyCast(typeName(fieldType), value);
+		}
+	}
+
+	/**
+	 * Same as {@link #buildDocFieldExtractor}, but nested models and lists of {@link ObjectId}s, enums or models
+	 * reuse the current value of the model, e.g. AddressAdapter.INSTANCE.doc2model((Document) doc.get(fields.address), model.getAddress())
+	 */
+	protected Object buildDocFieldRefiller(F modelField) {
+
+		final T fieldType = fieldType(modelField);
+		final T itemType = itemType(fieldType);
+		final boolean isList = isList(fieldType);
+		final CodeBlock value = CodeBlock.of("$L.get($L.$L)", docVar, fieldsField, name(modelField));
+		final CodeBlock current = buildModelFieldGetter(modelVar, modelField);
+		final String itemVar = "value";
+
+		if (isObjectId(modelField) && isList) {
+			return CodeBlock.of("refillList($L, $L, ($L, previous) -> $L)", applyCast(listOrItem(true, ClassName.get(ObjectId.class)), value), current,
+				itemVar, applyFunction(id2string, itemVar));
+
+		} else if (isEnum(itemType) && isList) {
+			return CodeBlock.of("refillList($L, $L, ($L, previous) -> $L)", applyCast(listOrItem(true, ClassName.OBJECT), value), current,
+				itemVar, buildEnumItemDecoder(modelField, itemVar));
+
+		} else if (!isObjectId(modelField) && !isEnum(itemType) && adapterInstance(itemType) != null) {
+			return CodeBlock.of("$L.$L($L, $L)", adapterInstance(itemType), doc2model, applyCast(listOrItem(isList, ClassName.get(Document.class)), value), current);
+
+		} else {
+			return buildDocFieldExtractor(docVar, modelField, fieldType);
+		}
+	}
+
+	/** Generates the code that converts one stored item of an enum list, e.g. obj2enum(item, SomeEnum.class) */
+	protected CodeBlock buildEnumItemDecoder(F modelField, String itemVar) {
+		return CodeBlock.of("$L($L, $T.class)", obj2enum, itemVar, rawTypeName(itemType(fieldType(modelField))));
+	}
+
+	/**
+	 * Generates the code that compares the given field in beforeVar and afterVar, and updates it if it changed.
+	 * The result is something like:
+	 * if (!Objects.equals(before.getSomeField(), after.getSomeField())) updateValue(set, unset, prefix, fields.someField, after.getSomeField())
+	 * The value is obtained with {@link #buildModelFieldExtractor}, so custom mappings done there also apply here.
+	 * Fields of models with an adapter are compared with that adapter (see {@link BaseDocumentAdapter#updateModel}).
+	 *
+	 * You may override this method in some cases.
+	 */
+	public CodeBlock buildUpdateFieldStatement(String beforeVar, String afterVar, F modelField) {
+
+		final T fieldType = fieldType(modelField);
+		final T itemType = itemType(fieldType);
+		final TypeName type = typeName(fieldType);
+		final CodeBlock beforeValue = buildModelFieldGetter(beforeVar, modelField);
+		final CodeBlock afterValue = buildModelFieldGetter(afterVar, modelField);
+
+		if (!isObjectId(modelField) && !isEnum(itemType) && adapterInstance(itemType) != null) {
+			return CodeBlock.builder().addStatement("$L($L, $L, $L, $L.$L, $L, $L, $L)",
+				isList(fieldType) ? "updateModels" : "updateModel", setVar, unsetVar, prefixVar, fieldsField, name(modelField),
+				adapterInstance(itemType), beforeValue, afterValue).build();
+		}
+
+		final CodeBlock changed;
+		if (type.equals(TypeName.DOUBLE) || type.equals(TypeName.FLOAT)) {
+			changed = CodeBlock.of("$T.compare($L, $L) != 0", Double.class, beforeValue, afterValue);
+		} else if (type.isPrimitive()) {
+			changed = CodeBlock.of("$L != $L", beforeValue, afterValue);
+		} else if (type instanceof ArrayTypeName) {
+			changed = CodeBlock.of("!$T.equals($L, $L)", Arrays.class, beforeValue, afterValue);
+		} else {
+			changed = CodeBlock.of("!$T.equals($L, $L)", Objects.class, beforeValue, afterValue);
+		}
+
+		return CodeBlock.builder()
+			.beginControlFlow("if ($L)", changed)
+			.addStatement("updateValue($L, $L, $L, $L.$L, $L)", setVar, unsetVar, prefixVar, fieldsField, name(modelField), buildModelFieldExtractor(afterVar, modelField))
+			.endControlFlow()
+			.build();
+	}
+
+	/**
+	 * Generates the code that checks the given field of the docVar, with the validate helpers of {@link BaseDocumentAdapter}.
+	 * Nested models are validated by their adapters, lists are checked item by item,
+	 * and other fields are converted with {@link #buildDocFieldExtractor}, so custom mappings done there also apply here.
+	 */
+	public CodeBlock buildValidateFieldStatement(String violationsVar, F modelField) {
+
+		final T fieldType = fieldType(modelField);
+		final T itemType = itemType(fieldType);
+		final boolean isList = isList(fieldType);
+		final CodeBlock value = CodeBlock.of("$L.get($L.$L)", docVar, fieldsField, name(modelField));
+		final CodeBlock field = CodeBlock.of("$L.$L", fieldsField, name(modelField));
+
+		if (!isObjectId(modelField) && !isEnum(itemType) && adapterInstance(itemType) != null) {
+			return CodeBlock.builder().addStatement("$L($L, $L, $L, $L, $L)", isList ? "validateModels" : "validateModel",
+				violationsVar, prefixVar, field, value, adapterInstance(itemType)).build();
+
+		} else if (isList && isEnum(itemType) && !isObjectId(modelField)) {
+			final String itemVar = "item";
+			return CodeBlock.builder().addStatement("validateItems($L, $L, $L, $L, $T.class, $L -> $L)",
+				violationsVar, prefixVar, field, value, getDocFieldClass(modelField), itemVar, buildEnumItemDecoder(modelField, itemVar)).build();
+
+		} else if (isList) {
+			return CodeBlock.builder().addStatement("validateItems($L, $L, $L, $L, $T.class)",
+				violationsVar, prefixVar, field, value, getDocFieldClass(modelField)).build();
+		}
+
+		final CodeBlock validateValue = CodeBlock.of("validateValue($L, $L, $L, $L, $T.class, () -> $L)",
+			violationsVar, prefixVar, field, value, getDocFieldClass(modelField), buildDocFieldExtractor(docVar, modelField, fieldType));
+
+		if (typeName(fieldType).isPrimitive()) {
+			return CodeBlock.builder().addStatement("if (validatePresent($L, $L, $L, $L)) $L", violationsVar, prefixVar, field, value, validateValue).build();
+		}
+		return CodeBlock.builder().addStatement(validateValue).build();
+	}
+
+	/**
+	 * Class of the values stored in the document for the field (of the items, for lists), reported by validate when a value has another class.
+	 * Custom mappings that override {@link #buildDocFieldExtractor} to store another type should override this too.
+	 */
+	public TypeName getDocFieldClass(F modelField) {
+
+		final T fieldType = fieldType(modelField);
+		final T itemType = itemType(fieldType);
+
+		if (isObjectId(modelField)) {
+			return ClassName.get(ObjectId.class);
+		} else if (isEnum(itemType)) {
+			return ClassName.get(String.class);
+		} else if (isPrimitiveArray(fieldType)) {
+			return ClassName.get(List.class); // Or a packed Binary
+		} else {
+			final TypeName itemClass = rawTypeName(itemType);
+			return itemClass.isPrimitive() ? itemClass.box() : itemClass;
+		}
+	}
+
+	/**
+	 * Generates the statement to write the given modelVar field with the writerVar.
+	 * The result is something like: encodeField(writer, fields.someField, model.getSomeField())
+	 * For basic types, the value is obtained with {@link #buildModelFieldExtractor},
+	 * so custom mappings done there also apply here, as long as the resulting type is a basic type.
+	 *
+	 * You may override this method in some cases.
+	 */
+	public CodeBlock buildCodecFieldEncodeStatement(String writerVar, String modelVar, F modelField) {
+
+		final T fieldType = fieldType(modelField);
+		final boolean isList = isList(fieldType);
+		final T itemType = itemType(fieldType);
+		final CodeBlock getter = buildModelFieldGetter(modelVar, modelField);
+		final String name = name(modelField);
+
+		if (isObjectId(modelField)) {
+			return CodeBlock.of("$L($L, $L.$L, $L)", isList ? "encodeObjectIds" : "encodeObjectId", writerVar, fieldsField, name, getter);
+
+		} else if (isEnum(itemType)) {
+			return CodeBlock.of("$L($L, $L.$L, $L)", isList ? "encodeEnums" : "encodeEnum", writerVar, fieldsField, name, getter);
+
+		} else if (adapterInstance(itemType) != null) {
+			return CodeBlock.of("$L($L, $L.$L, $L, $L, $L)", isList ? "encodeModels" : "encodeModel", writerVar, fieldsField, name,
+				codecAdapterInstance(itemType), getter, ctxVar);
+
+		} else if (isPrimitiveArray(fieldType)) {
+			return CodeBlock.of("$L($L, $L.$L, $L)", isPacked(modelField) ? "encodePacked" : "encodeArray", writerVar, fieldsField, name, getter);
+
+		} else if (isList) {
+			return CodeBlock.of("encodeList($L, $L.$L, $L, $L)", writerVar, fieldsField, name, getter, ctxVar);
+
+		} else if (codecReaders.containsKey(typeName(fieldType))) {
+			return CodeBlock.of("encodeField($L, $L.$L, $L)", writerVar, fieldsField, name, buildModelFieldExtractor(modelVar, modelField));
+
+		} else {
+			return CodeBlock.of("encodeField($L, $L.$L, $L, $L)", writerVar, fieldsField, name, buildModelFieldExtractor(modelVar, modelField), ctxVar);
+		}
+	}
+
+	/**
+	 * Generates the statement to read the given modelVar field with the readerVar.
+	 * The result is something like: model.setSomeField(reader.readString())
+	 * Usually you don't need to override this method.
+	 * It's more probable that you want to override {@link #buildCodecFieldDecoder}.
+	 */
+	public CodeBlock buildCodecFieldDecodeStatement(String modelVar, String readerVar, F modelField) {
+		return CodeBlock.builder().add("$L.$L($L)", modelVar, setterName(modelField), buildCodecFieldDecoder(readerVar, modelField, fieldType(modelField))).build();
+	}
+
+	/**
+	 * Generates the code to read the given field with the readerVar, which is positioned on the (non-null) value.
+	 * The result is something like this for basic types: reader.readString().
+	 * For some types a helper from {@link BaseCodecAdapter} is used, e.g. readEnum(reader, SomeEnum.class)
+	 *
+	 * You may override this method in some cases. Return any object that can be converted to a String.
+	 * See: https://github.com/square/javapoet#l-for-literals
+	 */
+	public Object buildCodecFieldDecoder(String readerVar, F modelField, T fieldType) {
+
+		final boolean isList = isList(fieldType);
+		final T itemType = itemType(fieldType);
+
+		if (isObjectId(modelField)) {
+			return CodeBlock.of("$L($L)", isList ? "readObjectIds" : "readObjectId", readerVar);
+
+		} else if (isEnum(itemType)) {
+			return CodeBlock.of("$L($L, $T.class)", isList ? "readEnums" : "readEnum", readerVar, rawTypeName(itemType));
+
+		} else if (adapterInstance(itemType) != null) {
+			return CodeBlock.of("$L($L, $L, $L)", isList ? "readModels" : "readModel", readerVar, codecAdapterInstance(itemType), ctxVar);
+
+		} else if (isPrimitiveArray(fieldType)) {
+			return CodeBlock.of("read$L($L)", StringUtils.capitalize(primitiveArrays.get(typeName(fieldType))), readerVar);
+
+		} else if (isList) {
+			return CodeBlock.of("readList($L, $L)", readerVar, ctxVar);
+
+		} else if (codecReaders.containsKey(typeName(fieldType))) {
+			return codecReaders.get(typeName(fieldType)).apply(readerVar);
+
+		} else {
+			return applyCast(typeName(fieldType), CodeBlock.of("readValue($L, $L)", readerVar, ctxVar));
+		}
+	}
+
+
+	// --- Helpers ---
+
+	/** Generates the call to the getter, e.g. model.getSomeField() */
+	protected CodeBlock buildModelFieldGetter(String modelVar, F modelField) {
+		return CodeBlock.builder().add("$L.$L()", modelVar, getterName(modelField)).build();
+	}
+
+	protected String getterName(F modelField) {
+		final String getterPrefix = typeName(fieldType(modelField)).equals(TypeName.BOOLEAN) ? "is" : "get";
+		return getterPrefix + StringUtils.capitalize(name(modelField));
+	}
+
+	protected String setterName(F modelField) {
+		return "set" + StringUtils.capitalize(name(modelField));
+	}
+
+	/** Whether the type is int[], long[] or double[], the arrays with helpers in {@link BaseAdapter} */
+	protected boolean isPrimitiveArray(T type) {
+		return primitiveArrays.containsKey(typeName(type));
+	}
+
+	protected TypeName listOrItem(boolean isList, ClassName itemType) {
+		return isList ? ParameterizedTypeName.get(ClassName.get(List.class), itemType) : itemType;
+	}
+
+	protected CodeBlock applyFunction(Object functionName, Object arg) {
+		return CodeBlock.builder().add("$L($L)", functionName, arg).build();
+	}
+
+	protected Object applyCast(TypeName type, Object arg) {
+		if (type.equals(ClassName.OBJECT)) return arg;
+		return CodeBlock.builder().add("($T) $L", type, arg).build();
+	}
+}
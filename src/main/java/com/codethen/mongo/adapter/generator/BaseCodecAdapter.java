@@ -0,0 +1,434 @@
+package com.codethen.mongo.adapter.generator;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.AbstractBsonReader;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BsonInput;
+import org.bson.io.BsonInputMark;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Base adapter that, besides converting to/from {@link Document}, is also a {@link Codec}.
+ * The codec writes straight to a {@link BsonWriter} and reads straight from a {@link BsonReader},
+ * so no intermediate {@link Document} is created.
+ *
+ * Generated adapters override {@link #encodeFields} and {@link #decodeField}.
+ * This class provides some utility methods for convenience. These methods could be overridden as necessary.
+ */
+public abstract class BaseCodecAdapter<M> extends BaseDocumentAdapter<M> implements Codec<M> {
+
+	private static final BsonTypeClassMap bsonTypeClassMap = new BsonTypeClassMap();
+	private static final RawBsonDocumentCodec rawDocumentCodec = new RawBsonDocumentCodec();
+
+	/** Used to encode and decode values of types that the generated code doesn't handle directly */
+	private CodecRegistry codecRegistry = MongoClientSettings.getDefaultCodecRegistry();
+
+	public CodecRegistry getCodecRegistry() {
+		return codecRegistry;
+	}
+
+	public void setCodecRegistry(CodecRegistry codecRegistry) {
+		this.codecRegistry = codecRegistry;
+	}
+
+
+	// --- Codec ---
+
+	/** Writes the model, or copies its original BSON if it's a {@link RawModel} that didn't change */
+	@Override
+	public void encode(BsonWriter writer, M model, EncoderContext ctx) {
+		if (model instanceof RawModel) {
+			final RawBsonDocument raw = ((RawModel) model).getRawDocument();
+			if (raw != null) {
+				writer.pipe(new BsonBinaryReader(raw.getByteBuffer().asNIO()));
+				return;
+			}
+		}
+		writer.writeStartDocument();
+		encodeFields(writer, model, ctx);
+		writer.writeEndDocument();
+	}
+
+	@Override
+	public M decode(BsonReader reader, DecoderContext ctx) {
+		return decodeInto(reader, newModelInstance(), ctx);
+	}
+
+	/** Reads the document into the given model */
+	public M decodeInto(BsonReader reader, M model, DecoderContext ctx) {
+		reader.readStartDocument();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			final String name = reader.readName();
+			if (reader.getCurrentBsonType() == BsonType.NULL) {
+				reader.readNull();
+			} else if (!decodeField(reader, name, model, ctx)) {
+				reader.skipValue();
+			}
+		}
+		reader.readEndDocument();
+		return model;
+	}
+
+	/** Writes the fields of the model (without the start and end of the document) */
+	public void encodeFields(BsonWriter writer, M model, EncoderContext ctx) {
+		// Subclasses will write fields
+	}
+
+	/**
+	 * Reads the current value (named docField) into the model.
+	 * Returns false if the field is unknown, so the value is skipped.
+	 */
+	public boolean decodeField(BsonReader reader, String docField, M model, DecoderContext ctx) {
+		return false; // Subclasses will read fields
+	}
+
+
+	// --- Encode helpers (null values are not written, like in appendTo) ---
+
+	public void encodeField(BsonWriter writer, String field, String value) {
+		if (value != null) writer.writeString(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, int value) {
+		writer.writeInt32(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, Integer value) {
+		if (value != null) writer.writeInt32(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, long value) {
+		writer.writeInt64(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, Long value) {
+		if (value != null) writer.writeInt64(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, double value) {
+		writer.writeDouble(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, Double value) {
+		if (value != null) writer.writeDouble(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, boolean value) {
+		writer.writeBoolean(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, Boolean value) {
+		if (value != null) writer.writeBoolean(field, value);
+	}
+
+	public void encodeField(BsonWriter writer, String field, Date value) {
+		if (value != null) writer.writeDateTime(field, value.getTime());
+	}
+
+	public void encodeField(BsonWriter writer, String field, ObjectId value) {
+		if (value != null) writer.writeObjectId(field, value);
+	}
+
+	/** Fallback for any other type, using the {@link #codecRegistry} */
+	public void encodeField(BsonWriter writer, String field, Object value, EncoderContext ctx) {
+		if (value == null) return;
+		writer.writeName(field);
+		encodeValue(writer, value, ctx);
+	}
+
+	public void encodeObjectId(BsonWriter writer, String field, String id) {
+		if (id != null) writer.writeObjectId(field, string2id(id));
+	}
+
+	public void encodeObjectIds(BsonWriter writer, String field, List<String> ids) {
+		if (ids == null) return;
+		writer.writeStartArray(field);
+		for (String id : ids) {
+			if (id == null) writer.writeNull(); else writer.writeObjectId(string2id(id));
+		}
+		writer.writeEndArray();
+	}
+
+	public <T extends Enum<T>> void encodeEnum(BsonWriter writer, String field, T value) {
+		if (value != null) writer.writeString(field, value.name());
+	}
+
+	public <T extends Enum<T>> void encodeEnums(BsonWriter writer, String field, List<T> values) {
+		if (values == null) return;
+		writer.writeStartArray(field);
+		for (T value : values) {
+			if (value == null) writer.writeNull(); else writer.writeString(value.name());
+		}
+		writer.writeEndArray();
+	}
+
+	/** Writes enums with the given encoder, that converts each one to a String or an Integer */
+	public <T extends Enum<T>> void encodeEnums(BsonWriter writer, String field, List<T> values, Function<T, ?> encoder) {
+		if (values == null) return;
+		writer.writeStartArray(field);
+		for (T value : values) {
+			final Object encoded = value == null ? null : encoder.apply(value);
+			if (encoded == null) writer.writeNull();
+			else if (encoded instanceof Integer) writer.writeInt32((Integer) encoded);
+			else writer.writeString((String) encoded);
+		}
+		writer.writeEndArray();
+	}
+
+	// Primitive arrays are written item by item (or as a packed Binary), without boxing
+
+	public void encodeArray(BsonWriter writer, String field, int[] values) {
+		if (values == null) return;
+		writer.writeStartArray(field);
+		for (int value : values) writer.writeInt32(value);
+		writer.writeEndArray();
+	}
+
+	public void encodeArray(BsonWriter writer, String field, long[] values) {
+		if (values == null) return;
+		writer.writeStartArray(field);
+		for (long value : values) writer.writeInt64(value);
+		writer.writeEndArray();
+	}
+
+	public void encodeArray(BsonWriter writer, String field, double[] values) {
+		if (values == null) return;
+		writer.writeStartArray(field);
+		for (double value : values) writer.writeDouble(value);
+		writer.writeEndArray();
+	}
+
+	public void encodePacked(BsonWriter writer, String field, int[] values) {
+		if (values != null) writer.writeBinaryData(field, new BsonBinary(array2binary(values).getData()));
+	}
+
+	public void encodePacked(BsonWriter writer, String field, long[] values) {
+		if (values != null) writer.writeBinaryData(field, new BsonBinary(array2binary(values).getData()));
+	}
+
+	public void encodePacked(BsonWriter writer, String field, double[] values) {
+		if (values != null) writer.writeBinaryData(field, new BsonBinary(array2binary(values).getData()));
+	}
+
+	public <T> void encodeModel(BsonWriter writer, String field, BaseCodecAdapter<T> adapter, T model, EncoderContext ctx) {
+		if (model == null) return;
+		writer.writeName(field);
+		adapter.encode(writer, model, ctx);
+	}
+
+	public <T> void encodeModels(BsonWriter writer, String field, BaseCodecAdapter<T> adapter, List<T> models, EncoderContext ctx) {
+		if (models == null) return;
+		writer.writeStartArray(field);
+		for (T model : models) {
+			if (model == null) writer.writeNull(); else adapter.encode(writer, model, ctx);
+		}
+		writer.writeEndArray();
+	}
+
+	public void encodeList(BsonWriter writer, String field, List<?> values, EncoderContext ctx) {
+		if (values == null) return;
+		writer.writeStartArray(field);
+		for (Object value : values) {
+			encodeValue(writer, value, ctx);
+		}
+		writer.writeEndArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	public void encodeValue(BsonWriter writer, Object value, EncoderContext ctx) {
+		if (value == null) {
+			writer.writeNull();
+		} else {
+			final Codec<Object> codec = (Codec<Object>) codecRegistry.get(value.getClass());
+			ctx.encodeWithChildContext(codec, writer, value);
+		}
+	}
+
+
+	// --- Decode helpers (the reader is positioned on a non-null value) ---
+
+	public String readObjectId(BsonReader reader) {
+		return id2string(reader.readObjectId());
+	}
+
+	public List<String> readObjectIds(BsonReader reader) {
+		final List<String> result = new ArrayList<>();
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			result.add(reader.getCurrentBsonType() == BsonType.NULL ? readNull(reader) : readObjectId(reader));
+		}
+		reader.readEndArray();
+		return result;
+	}
+
+	public <T extends Enum<T>> T readEnum(BsonReader reader, Class<T> clazz) {
+		return enumFromName(clazz, reader.readString());
+	}
+
+	public <T extends Enum<T>> List<T> readEnums(BsonReader reader, Class<T> clazz) {
+		final List<T> result = new ArrayList<>();
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			result.add(reader.getCurrentBsonType() == BsonType.NULL ? readNull(reader) : readEnum(reader, clazz));
+		}
+		reader.readEndArray();
+		return result;
+	}
+
+	/** Reads enums stored as Strings or Integers, with the given decoder */
+	public <T extends Enum<T>> List<T> readEnums(BsonReader reader, Function<Object, T> decoder) {
+		final List<T> result = new ArrayList<>();
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			switch (reader.getCurrentBsonType()) {
+				case NULL: result.add(readNull(reader)); break;
+				case INT32: result.add(decoder.apply(reader.readInt32())); break;
+				default: result.add(decoder.apply(reader.readString()));
+			}
+		}
+		reader.readEndArray();
+		return result;
+	}
+
+	/** Reads an array of numbers or a packed Binary (see {@link #obj2ints}) */
+	public int[] readInts(BsonReader reader) {
+		if (reader.getCurrentBsonType() == BsonType.BINARY) return obj2ints(readBinary(reader));
+		int[] result = new int[16];
+		int size = 0;
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			if (size == result.length) result = Arrays.copyOf(result, size * 2);
+			result[size++] = (int) readLongValue(reader);
+		}
+		reader.readEndArray();
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/** See {@link #readInts} */
+	public long[] readLongs(BsonReader reader) {
+		if (reader.getCurrentBsonType() == BsonType.BINARY) return obj2longs(readBinary(reader));
+		long[] result = new long[16];
+		int size = 0;
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			if (size == result.length) result = Arrays.copyOf(result, size * 2);
+			result[size++] = readLongValue(reader);
+		}
+		reader.readEndArray();
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/** See {@link #readInts} */
+	public double[] readDoubles(BsonReader reader) {
+		if (reader.getCurrentBsonType() == BsonType.BINARY) return obj2doubles(readBinary(reader));
+		double[] result = new double[16];
+		int size = 0;
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			if (size == result.length) result = Arrays.copyOf(result, size * 2);
+			result[size++] = readDoubleValue(reader);
+		}
+		reader.readEndArray();
+		return size == result.length ? result : Arrays.copyOf(result, size);
+	}
+
+	/** Copies the current document, to decode it later (see {@link #decodeRaw} and {@link AdapterGenerator#setGenerateRaw}) */
+	public RawBsonDocument readRawDocument(BsonReader reader, DecoderContext ctx) {
+		// The value can only be skipped inside another document, not for a top-level document
+		if (!(reader instanceof BsonBinaryReader) || ((BsonBinaryReader) reader).getState() != AbstractBsonReader.State.VALUE) {
+			return rawDocumentCodec.decode(reader, ctx);
+		}
+		// Copies the bytes of the document at once, instead of piping them through a growing buffer
+		final BsonInput input = ((BsonBinaryReader) reader).getBsonInput();
+		final BsonInputMark start = input.getMark(Integer.MAX_VALUE);
+		final int startPosition = input.getPosition();
+		reader.skipValue();
+		final byte[] bytes = new byte[input.getPosition() - startPosition];
+		start.reset();
+		input.readBytes(bytes);
+		return new RawBsonDocument(bytes);
+	}
+
+	/** Reads the raw document into the given model */
+	public M decodeRaw(RawBsonDocument raw, M model) {
+		return decodeInto(new BsonBinaryReader(raw.getByteBuffer().asNIO()), model, DecoderContext.builder().build());
+	}
+
+	public <T> T readModel(BsonReader reader, BaseCodecAdapter<T> adapter, DecoderContext ctx) {
+		return adapter.decode(reader, ctx);
+	}
+
+	public <T> List<T> readModels(BsonReader reader, BaseCodecAdapter<T> adapter, DecoderContext ctx) {
+		final List<T> result = new ArrayList<>();
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			result.add(reader.getCurrentBsonType() == BsonType.NULL ? readNull(reader) : adapter.decode(reader, ctx));
+		}
+		reader.readEndArray();
+		return result;
+	}
+
+	public <T> List<T> readList(BsonReader reader, DecoderContext ctx) {
+		final List<T> result = new ArrayList<>();
+		reader.readStartArray();
+		while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+			result.add(readValue(reader, ctx));
+		}
+		reader.readEndArray();
+		return result;
+	}
+
+	/** Fallback for any other type, using the {@link #codecRegistry} */
+	@SuppressWarnings("unchecked")
+	public <T> T readValue(BsonReader reader, DecoderContext ctx) {
+		final BsonType bsonType = reader.getCurrentBsonType();
+		if (bsonType == BsonType.NULL) return readNull(reader);
+		return (T) ctx.decodeWithChildContext(codecRegistry.get(bsonTypeClassMap.get(bsonType)), reader);
+	}
+
+	private Binary readBinary(BsonReader reader) {
+		final BsonBinary binary = reader.readBinaryData();
+		return new Binary(binary.getType(), binary.getData());
+	}
+
+	/** Reads a number item, that may have been stored with another numeric type */
+	private long readLongValue(BsonReader reader) {
+		switch (reader.getCurrentBsonType()) {
+			case INT32: return reader.readInt32();
+			case DOUBLE: return (long) reader.readDouble();
+			default: return reader.readInt64();
+		}
+	}
+
+	private double readDoubleValue(BsonReader reader) {
+		switch (reader.getCurrentBsonType()) {
+			case INT32: return reader.readInt32();
+			case INT64: return reader.readInt64();
+			default: return reader.readDouble();
+		}
+	}
+
+	private <T> T readNull(BsonReader reader) {
+		reader.readNull();
+		return null;
+	}
+}
@@ -1,9 +1,18 @@
 package com.codethen.mongo.adapter.generator;
 
+import com.codethen.mongo.adapter.metrics.AdapterMetrics;
+import com.codethen.util.BsonSize;
+import com.codethen.util.ObjectIds;
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.bson.types.ObjectId;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Base adapter where one of the models is a {@link Document}.
@@ -11,6 +20,23 @@ import java.util.List;
  */
 public abstract class BaseDocumentAdapter<M> extends BaseAdapter<M, Document> {
 
+	/** Metrics of all the adapters generated with {@link AdapterGenerator#setGenerateMetrics} */
+	private static volatile AdapterMetrics metrics = AdapterMetrics.NONE;
+
+	/** Start time returned by {@link #startMetrics} when the conversion is not measured */
+	public static final long notMeasured = Long.MIN_VALUE;
+
+	/** Source of the conversion being measured in each thread (see {@link #startMetrics}) */
+	private static final ThreadLocal<Object> measuredSource = new ThreadLocal<>();
+
+	public static AdapterMetrics getMetrics() {
+		return metrics;
+	}
+
+	public static void setMetrics(AdapterMetrics metrics) {
+		BaseDocumentAdapter.metrics = metrics;
+	}
+
 	@Override
 	public Document model2doc(M model) {
 		if (model == null) return null;
@@ -23,28 +49,339 @@ public abstract class BaseDocumentAdapter<M> extends BaseAdapter<M, Document> {
 		return newModelInstance();
 	}
 
+	/**
+	 * Fills the target with the document, instead of creating a new model (a new one is created if the target is null).
+	 * Generated adapters set all the mapped fields, reusing the nested models and lists of the target.
+	 * The target (and its nested models) should be of the class created by the adapter, so no fields are left behind.
+	 * Returns null if the document is null.
+	 *
+	 * Adapters that don't override it throw {@link UnsupportedOperationException}, instead of returning a target that wasn't filled.
+	 */
+	public M doc2model(Document doc, M target) {
+		throw new UnsupportedOperationException(getClass().getName() + " doesn't implement doc2model(doc, target)");
+	}
+
+	/** The model to fill in doc2model(doc, target): the target, or a new model if it's null. Null if the document is null. */
+	public M refillTarget(Document doc, M target) {
+		if (doc == null) return null;
+		return target != null ? target : newModelInstance();
+	}
+
+	/** Fills the target list with the documents, reusing its models. See {@link #refillList}. */
+	public List<M> doc2model(List<Document> docs, List<M> targets) {
+		return refillList(docs, targets, this::doc2model);
+	}
+
 	public abstract M newModelInstance();
 
+	/**
+	 * Starts measuring the conversion of the source (a model or a document), and returns the start time (see {@link System#nanoTime}).
+	 * Returns {@link #notMeasured} if there are no {@link #metrics}, or if the source is already being measured in this thread:
+	 * the superclass adapters, called with super, convert the same source, so the conversion is only recorded by the outermost call.
+	 * The conversion must end with {@link #stopMetrics}, even if it throws.
+	 */
+	public long startMetrics(Object source) {
+		if (metrics == AdapterMetrics.NONE || source == null || measuredSource.get() == source) return notMeasured;
+		measuredSource.set(source);
+		return System.nanoTime();
+	}
+
+	/** Records a conversion that started at startNanos (see {@link #startMetrics}), unless it was {@link #notMeasured} */
+	public void recordMetrics(AdapterMetrics.Operation operation, long startNanos, Document doc) {
+		if (startNanos == notMeasured) return;
+		final AdapterMetrics metrics = BaseDocumentAdapter.metrics;
+		if (metrics != AdapterMetrics.NONE) {
+			metrics.record(getClass(), operation, System.nanoTime() - startNanos, doc.size(), BsonSize.estimate(doc));
+		}
+	}
+
+	/**
+	 * Ends the conversion that started at startNanos, recorded or not (called in a finally block).
+	 * The outermost call stops marking its source as being measured, so it's not kept if the conversion threw.
+	 */
+	public void stopMetrics(long startNanos) {
+		if (startNanos != notMeasured) measuredSource.remove();
+	}
+
+
+	/**
+	 * Builds an update with the fields that changed from before to after, using $set and $unset (for null values).
+	 * Nested models are compared field by field, using dotted paths.
+	 * The _id can't be changed (see {@link #updateValue}), so models with different ids are rejected.
+	 * Returns an empty document if nothing changed.
+	 */
+	public Document model2update(M before, M after) {
+		if (before == null || after == null) throw new IllegalArgumentException("Both models are needed to build an update");
+		final Document set = new Document();
+		final Document unset = new Document();
+		appendUpdate(set, unset, "", before, after);
+		final Document update = new Document();
+		if (!set.isEmpty()) update.append("$set", set);
+		if (!unset.isEmpty()) update.append("$unset", unset);
+		return update;
+	}
+
+	/**
+	 * Appends to set and unset the fields that changed from before to after (both not null).
+	 * The prefix is prepended to the field names (it's empty, or the path of the nested model ending with a dot).
+	 */
+	public void appendUpdate(Document set, Document unset, String prefix, M before, M after) {
+		// Subclasses will compare fields
+	}
+
+	/**
+	 * Sets the field to the given value, or unsets it if it's null.
+	 * MongoDB rejects updates that change the _id of a document, so a null _id is ignored (e.g. an after model built
+	 * from a DTO without it), and a different one throws an {@link IllegalArgumentException}.
+	 */
+	public void updateValue(Document set, Document unset, String prefix, String field, Object value) {
+		if (isRootId(prefix, field)) {
+			if (value != null) throw new IllegalArgumentException("The _id of a document can't be changed in an update: " + value);
+			return;
+		}
+		if (value == null) unset.append(prefix + field, "");
+		else set.append(prefix + field, value);
+	}
+
+	/** Whether the field is the _id of the document (not of a nested model) */
+	public boolean isRootId(String prefix, String field) {
+		return prefix.isEmpty() && field.equals("_id");
+	}
+
+	/** Updates only the fields that changed in the nested model, or the whole model if it was null or its class changed */
+	public <T> void updateModel(Document set, Document unset, String prefix, String field, BaseDocumentAdapter<T> adapter, T before, T after) {
+		if (before == after) return;
+		if (before == null || after == null || before.getClass() != after.getClass()) {
+			updateValue(set, unset, prefix, field, adapter.model2doc(after));
+		} else {
+			adapter.appendUpdate(set, unset, prefix + field + ".", before, after);
+		}
+	}
+
+	/** Updates the whole list if any of the models changed (they are compared as documents) */
+	public <T> void updateModels(Document set, Document unset, String prefix, String field, BaseDocumentAdapter<T> adapter, List<T> before, List<T> after) {
+		if (before == after) return;
+		final List<Document> afterDocs = adapter.model2doc(after);
+		if (before == null || after == null || !adapter.model2doc(before).equals(afterDocs)) {
+			updateValue(set, unset, prefix, field, afterDocs);
+		}
+	}
+
+
+	/**
+	 * Checks that the document can be converted: the types of all the mapped fields, including the nested models.
+	 * Returns all the violations found (e.g. "adr.num: missing"), or an empty list if it's valid.
+	 * doc2model doesn't check the types, so this can be used where the documents come from untrusted sources.
+	 */
+	public List<String> validate(Document doc) {
+		final List<String> violations = new ArrayList<>();
+		if (doc != null) validate(doc, "", violations);
+		return violations;
+	}
+
+	/** Appends the violations of the document to the list. The prefix is prepended to the field names (see {@link #appendUpdate}). */
+	public void validate(Document doc, String prefix, List<String> violations) {
+		// Subclasses will check fields
+	}
+
+	/** Checks that the value of a primitive field is present. Returns whether it's present. */
+	public boolean validatePresent(List<String> violations, String prefix, String field, Object value) {
+		if (value != null) return true;
+		violations.add(prefix + field + ": missing");
+		return false;
+	}
+
+	/**
+	 * Checks that the field can be converted, running the same conversion as doc2model.
+	 * If the value doesn't have the expected class it reports both classes, otherwise it reports the invalid value (e.g. an unknown enum name).
+	 */
+	public void validateValue(List<String> violations, String prefix, String field, Object value, Class<?> expectedClass, Supplier<?> conversion) {
+		try {
+			conversion.get();
+		} catch (ClassCastException e) {
+			violations.add(prefix + field + (value != null && !expectedClass.isInstance(value)
+				? ": expected " + expectedClass.getName() + " but was " + value.getClass().getName()
+				: ": invalid value " + value));
+		} catch (RuntimeException e) {
+			violations.add(prefix + field + ": invalid value " + value);
+		}
+	}
+
+	/** Checks that the value is a list whose items are null or instances of the given class */
+	public void validateItems(List<String> violations, String prefix, String field, Object value, Class<?> itemClass) {
+		validateItems(violations, prefix, field, value, itemClass, item -> item);
+	}
+
+	/** Same as {@link #validateItems(List, String, String, Object, Class)}, and also checks that each item can be converted */
+	public void validateItems(List<String> violations, String prefix, String field, Object value, Class<?> itemClass, Function<Object, ?> conversion) {
+		if (value == null) return;
+		if (!(value instanceof List)) {
+			violations.add(prefix + field + ": expected a list but was " + value.getClass().getName());
+			return;
+		}
+		final List<?> items = (List<?>) value;
+		for (int i = 0; i < items.size(); i++) {
+			final Object item = items.get(i);
+			if (item == null) continue;
+			if (!itemClass.isInstance(item)) {
+				violations.add(prefix + field + "." + i + ": expected " + itemClass.getName() + " but was " + item.getClass().getName());
+				continue;
+			}
+			try {
+				conversion.apply(item);
+			} catch (RuntimeException e) {
+				violations.add(prefix + field + "." + i + ": invalid value " + item);
+			}
+		}
+	}
+
+	/** Checks that the value is a document valid for the adapter */
+	public <T> void validateModel(List<String> violations, String prefix, String field, Object value, BaseDocumentAdapter<T> adapter) {
+		if (value == null) return;
+		if (!(value instanceof Document)) {
+			violations.add(prefix + field + ": expected a document but was " + value.getClass().getName());
+			return;
+		}
+		adapter.validate((Document) value, prefix + field + ".", violations);
+	}
+
+	/** Checks that the value is a list of documents valid for the adapter */
+	public <T> void validateModels(List<String> violations, String prefix, String field, Object value, BaseDocumentAdapter<T> adapter) {
+		if (value == null) return;
+		if (!(value instanceof List)) {
+			violations.add(prefix + field + ": expected a list but was " + value.getClass().getName());
+			return;
+		}
+		final List<?> items = (List<?>) value;
+		for (int i = 0; i < items.size(); i++) {
+			validateModel(violations, prefix, field + "." + i, items.get(i), adapter);
+		}
+	}
+
 
 	public void appendTo(Document doc, String field, Object value) {
 		if (value != null)
 			doc.append(field, value);
 	}
 
+	/** See {@link ObjectIds#parse(String)} */
 	public ObjectId string2id(String id) {
-		return id == null ? null : new ObjectId(id);
+		return ObjectIds.parse(id);
 	}
 
+	/** See {@link ObjectIds#toHex(ObjectId)} */
 	public String id2string(ObjectId id) {
-		return id == null ? null : id.toString();
+		return ObjectIds.toHex(id);
 	}
 
+	/** See {@link ObjectIds#parse(List)} */
 	public List<ObjectId> string2id(List<String> ids) {
-		return mapToList(ids, this::string2id);
+		if (ids != null && ids.size() >= getParallelThreshold()) return mapToList(ids, this::string2id);
+		return ObjectIds.parse(ids);
 	}
 
+	/** See {@link ObjectIds#toHex(List)} */
 	public List<String> id2string(List<ObjectId> ids) {
-		return mapToList(ids, this::id2string);
+		if (ids != null && ids.size() >= getParallelThreshold()) return mapToList(ids, this::id2string);
+		return ObjectIds.toHex(ids);
+	}
+
+	// --- Primitive arrays, stored as lists of numbers or packed in a Binary (see AdapterGenerator#setPackedArrayFields) ---
+
+	public List<Integer> array2list(int[] values) {
+		if (values == null) return null;
+		final List<Integer> result = new ArrayList<>(values.length);
+		for (int value : values) result.add(value);
+		return result;
+	}
+
+	public List<Long> array2list(long[] values) {
+		if (values == null) return null;
+		final List<Long> result = new ArrayList<>(values.length);
+		for (long value : values) result.add(value);
+		return result;
+	}
+
+	public List<Double> array2list(double[] values) {
+		if (values == null) return null;
+		final List<Double> result = new ArrayList<>(values.length);
+		for (double value : values) result.add(value);
+		return result;
+	}
+
+	/** Packs the values in little-endian order, 4 bytes each */
+	public Binary array2binary(int[] values) {
+		if (values == null) return null;
+		final ByteBuffer buffer = ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asIntBuffer().put(values);
+		return new Binary(buffer.array());
+	}
+
+	/** Packs the values in little-endian order, 8 bytes each */
+	public Binary array2binary(long[] values) {
+		if (values == null) return null;
+		final ByteBuffer buffer = ByteBuffer.allocate(values.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asLongBuffer().put(values);
+		return new Binary(buffer.array());
+	}
+
+	/** Packs the values in little-endian order, 8 bytes each */
+	public Binary array2binary(double[] values) {
+		if (values == null) return null;
+		final ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asDoubleBuffer().put(values);
+		return new Binary(buffer.array());
+	}
+
+	/** Reads a list of numbers or a packed {@link Binary}, so a field can be packed or not without migrating the documents */
+	public int[] obj2ints(Object value) {
+		if (value == null) return null;
+		if (value instanceof Binary) {
+			final ByteBuffer buffer = packedBuffer((Binary) value, Integer.BYTES);
+			final int[] result = new int[buffer.remaining() / Integer.BYTES];
+			buffer.asIntBuffer().get(result);
+			return result;
+		}
+		final List<?> values = (List<?>) value;
+		final int[] result = new int[values.size()];
+		for (int i = 0; i < result.length; i++) result[i] = ((Number) values.get(i)).intValue();
+		return result;
+	}
+
+	/** See {@link #obj2ints} */
+	public long[] obj2longs(Object value) {
+		if (value == null) return null;
+		if (value instanceof Binary) {
+			final ByteBuffer buffer = packedBuffer((Binary) value, Long.BYTES);
+			final long[] result = new long[buffer.remaining() / Long.BYTES];
+			buffer.asLongBuffer().get(result);
+			return result;
+		}
+		final List<?> values = (List<?>) value;
+		final long[] result = new long[values.size()];
+		for (int i = 0; i < result.length; i++) result[i] = ((Number) values.get(i)).longValue();
+		return result;
+	}
+
+	/** See {@link #obj2ints} */
+	public double[] obj2doubles(Object value) {
+		if (value == null) return null;
+		if (value instanceof Binary) {
+			final ByteBuffer buffer = packedBuffer((Binary) value, Double.BYTES);
+			final double[] result = new double[buffer.remaining() / Double.BYTES];
+			buffer.asDoubleBuffer().get(result);
+			return result;
+		}
+		final List<?> values = (List<?>) value;
+		final double[] result = new double[values.size()];
+		for (int i = 0; i < result.length; i++) result[i] = ((Number) values.get(i)).doubleValue();
+		return result;
+	}
+
+	private ByteBuffer packedBuffer(Binary binary, int itemBytes) {
+		final byte[] data = binary.getData();
+		if (data.length % itemBytes != 0) throw new IllegalArgumentException("Packed array of " + data.length + " bytes is not made of " + itemBytes + "-byte items");
+		return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
 	}
 
 	public <T> List<T> getList(Document doc, String fieldName, Class<T> clazz) {
@@ -0,0 +1,120 @@
+package com.codethen.mongo.adapter.generator;
+
+import org.bson.BsonReader;
+import org.bson.BsonReaderMark;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.EncoderContext;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Base adapter for a base class whose subclasses are stored in the same field or collection.
+ * The class of each document is stored in a discriminator field, and the generated adapters
+ * (see {@link PolymorphicAdapterGenerator}) dispatch to the adapter of that class.
+ * This class provides some utility methods for convenience. These methods could be overridden as necessary.
+ */
+public abstract class BasePolymorphicAdapter<M> extends BaseCodecAdapter<M> {
+
+	/** Name of the discriminator field (e.g. "_t") */
+	private final String discriminatorField;
+
+	public BasePolymorphicAdapter(String discriminatorField) {
+		this.discriminatorField = discriminatorField;
+	}
+
+	public String getDiscriminatorField() {
+		return discriminatorField;
+	}
+
+	/** Discriminator of the document, or an empty string if it has none */
+	public String getDiscriminator(Document doc) {
+		final Object discriminator = doc.get(discriminatorField);
+		return discriminator == null ? "" : discriminator.toString();
+	}
+
+	/**
+	 * Discriminator of the document about to be read, or an empty string if it has none.
+	 * The reader is left where it was. Documents written by the codec have the discriminator first, so the rest is not read.
+	 */
+	public String readDiscriminator(BsonReader reader) {
+		final BsonReaderMark mark = reader.getMark();
+		try {
+			reader.readStartDocument();
+			while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+				if (reader.readName().equals(discriminatorField) && reader.getCurrentBsonType() == BsonType.STRING) {
+					return reader.readString();
+				}
+				reader.skipValue();
+			}
+			return "";
+		} finally {
+			mark.reset();
+		}
+	}
+
+	/**
+	 * Document converted by the adapter of the subclass, with the discriminator as first field (like {@link #encodeSubclass}),
+	 * so the codec finds it right away when the document is read back (see {@link #readDiscriminator}).
+	 */
+	public Document withDiscriminator(Document doc, String discriminator) {
+		final Document result = new Document(discriminatorField, discriminator);
+		result.putAll(doc);
+		result.put(discriminatorField, discriminator); // Keeps its position, in case the subclass has a field with the same name
+		return result;
+	}
+
+	/** Writes the model with the adapter of its class, with the discriminator as first field */
+	public <T> void encodeSubclass(BsonWriter writer, BaseCodecAdapter<T> adapter, String discriminator, T model, EncoderContext ctx) {
+		if (model instanceof RawModel && hasDiscriminator(((RawModel) model).getRawDocument(), discriminator)) {
+			adapter.encode(writer, model, ctx); // Copies the original BSON
+			return;
+		}
+		writer.writeStartDocument();
+		writer.writeString(discriminatorField, discriminator);
+		adapter.encodeFields(writer, model, ctx);
+		writer.writeEndDocument();
+	}
+
+	/** Whether the raw document has the given discriminator, so it can be copied as it is */
+	private boolean hasDiscriminator(RawBsonDocument raw, String discriminator) {
+		if (raw == null) return false;
+		final BsonValue value = raw.get(discriminatorField);
+		return value != null && value.isString() && value.asString().getValue().equals(discriminator);
+	}
+
+	/**
+	 * Updates a model whose class changed: sets all the fields of the new document and unsets the ones it doesn't have.
+	 * The _id of the document is kept, like in {@link #updateValue}.
+	 */
+	public void updateOtherClass(Document set, Document unset, String prefix, Document beforeDoc, Document afterDoc) {
+		for (String field : beforeDoc.keySet()) {
+			if (!afterDoc.containsKey(field) && !isRootId(prefix, field)) unset.append(prefix + field, "");
+		}
+		for (String field : afterDoc.keySet()) {
+			if (!isRootId(prefix, field)) set.append(prefix + field, afterDoc.get(field));
+			else if (!Objects.equals(beforeDoc.get(field), afterDoc.get(field))) updateValue(set, unset, prefix, field, afterDoc.get(field));
+		}
+	}
+
+	/** Adds a violation for a discriminator that doesn't match any subclass */
+	public void validateDiscriminator(List<String> violations, String prefix, String discriminator) {
+		violations.add(prefix + discriminatorField + ": " + (discriminator.isEmpty() ? "missing" : "unknown type " + discriminator));
+	}
+
+	/** Exception for a discriminator that doesn't match any subclass */
+	public IllegalArgumentException unknownDiscriminator(String discriminator) {
+		return new IllegalArgumentException(discriminator.isEmpty()
+			? "Missing discriminator " + discriminatorField + " for " + getEncoderClass().getName()
+			: "Unknown discriminator " + discriminatorField + "=" + discriminator + " for " + getEncoderClass().getName());
+	}
+
+	/** Exception for a model whose class is not known by the adapter */
+	public IllegalArgumentException unknownClass(Object model) {
+		return new IllegalArgumentException("Unknown subclass of " + getEncoderClass().getName() + ": " + model.getClass().getName());
+	}
+}
@@ -0,0 +1,146 @@
+package com.codethen.mongo.adapter.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Assigns short document keys (a, b, ..., z, a0, a1, ...) to the fields of the models generated with {@link AdapterGenerator#setCompactKeys},
+ * since BSON repeats the keys in every document.
+ *
+ * The keys are kept in a mapping file (lines like com.example.Person.name=a), so they don't change between generations
+ * and the stored documents can still be read. Keys are never reassigned, even if their field is removed.
+ * The file can be edited, e.g. to keep the current key of a field.
+ *
+ * Keys are unique within a model class and its superclasses and subclasses, since they are stored in the same document.
+ * Nested models are different documents, so they may use the same keys.
+ * Fields stored as "_id" keep that name.
+ */
+public class CompactKeys {
+
+	private static final String idKey = "_id";
+
+	private final File mappingFile;
+
+	/** Keys by class name and field, e.g. "com.example.Person.name" */
+	private final Map<String, String> keys = new TreeMap<>();
+
+	/** Estimated bytes saved per document, by model class */
+	private final Map<Class<?>, Integer> savings = new LinkedHashMap<>();
+
+	private boolean changed;
+
+	/** Reads the mapping file, if it exists */
+	public CompactKeys(File mappingFile) {
+		this.mappingFile = mappingFile;
+		if (mappingFile.exists()) {
+			try (Reader reader = Files.newBufferedReader(mappingFile.toPath(), StandardCharsets.UTF_8)) {
+				final Properties properties = new Properties();
+				properties.load(reader);
+				properties.stringPropertyNames().forEach(name -> keys.put(name, properties.getProperty(name)));
+			} catch (IOException e) {
+				throw new RuntimeException("Problem reading the compact keys from " + mappingFile, e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the compact keys of the given fields of the model (model field names to document field names).
+	 * The keys in reservedKeys (e.g. the ones of the adapter superclass) are not used.
+	 */
+	public synchronized Map<String, String> assign(Class<?> modelClass, Map<String, String> fieldNames, Collection<String> reservedKeys) {
+
+		final Set<String> usedKeys = new HashSet<>(reservedKeys);
+		usedKeys.addAll(fieldNames.values());
+		usedKeys.addAll(getRelatedKeys(modelClass));
+
+		final Map<String, String> result = new LinkedHashMap<>();
+		int saved = 0;
+		int next = 0;
+
+		for (Map.Entry<String, String> field : fieldNames.entrySet()) {
+
+			final String mappingName = modelClass.getName() + "." + field.getKey();
+			String key = field.getValue().equals(idKey) ? idKey : keys.get(mappingName);
+
+			if (key == null) {
+				do key = keyName(next++); while (usedKeys.contains(key));
+				usedKeys.add(key);
+				keys.put(mappingName, key);
+				changed = true;
+			}
+
+			result.put(field.getKey(), key);
+			saved += utf8Length(field.getValue()) - utf8Length(key);
+		}
+
+		savings.put(modelClass, saved);
+		return result;
+	}
+
+	/** Writes the mapping file, if new keys were assigned */
+	public synchronized void save() {
+		if (!changed) return;
+		try (Writer writer = Files.newBufferedWriter(mappingFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write("# Compact document keys of the generated adapters. Keys are never reassigned, so don't remove them.\n");
+			for (Map.Entry<String, String> entry : keys.entrySet()) {
+				writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+			}
+			changed = false;
+		} catch (IOException e) {
+			throw new RuntimeException("Problem writing the compact keys to " + mappingFile, e);
+		}
+	}
+
+	/** Estimated bytes saved per document (not counting nested documents), by model class */
+	public synchronized Map<Class<?>, Integer> getSavings() {
+		return new LinkedHashMap<>(savings);
+	}
+
+	/** Summary of {@link #getSavings} */
+	public synchronized String report() {
+		final StringBuilder report = new StringBuilder();
+		for (Map.Entry<Class<?>, Integer> entry : savings.entrySet()) {
+			report.append(String.format("%s: %d bytes saved per document%n", entry.getKey().getSimpleName(), entry.getValue()));
+		}
+		return report.toString();
+	}
+
+	/** Keys already assigned to the model class, its superclasses or its subclasses (the ones that can be loaded) */
+	private Set<String> getRelatedKeys(Class<?> modelClass) {
+		final Set<String> result = new HashSet<>();
+		for (Map.Entry<String, String> entry : keys.entrySet()) {
+			final String className = entry.getKey().substring(0, entry.getKey().lastIndexOf('.'));
+			final Class<?> mappedClass = loadClass(className, modelClass.getClassLoader());
+			if (mappedClass != null && (mappedClass.isAssignableFrom(modelClass) || modelClass.isAssignableFrom(mappedClass))) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	private static Class<?> loadClass(String className, ClassLoader classLoader) {
+		try {
+			return Class.forName(className, false, classLoader);
+		} catch (ClassNotFoundException e) {
+			return null; // The model was removed, so its keys don't matter
+		}
+	}
+
+	/** Key number n: a to z, then a0 to z9, and so on (keys don't start with a digit) */
+	static String keyName(int n) {
+		final String letters = "abcdefghijklmnopqrstuvwxyz";
+		final String chars = "0123456789" + letters;
+		if (n < letters.length()) return String.valueOf(letters.charAt(n));
+		final int rest = n - letters.length();
+		return keyName(rest / chars.length()) + chars.charAt(rest % chars.length());
+	}
+
+	private static int utf8Length(String value) {
+		return value.getBytes(StandardCharsets.UTF_8).length;
+	}
+}
@@ -0,0 +1,17 @@
+package com.codethen.mongo.adapter.generator;
+
+/**
+ * How an enum field is stored in the {@link org.bson.Document}.
+ * See {@link AdapterGenerator#setEnumStrategy(String, EnumStrategy)}.
+ */
+public enum EnumStrategy {
+
+	/** The name of the constant, as a String (this is the default when no strategy is set) */
+	NAME,
+
+	/** The ordinal of the constant, as an Integer. Note that reordering the constants changes the stored values. */
+	ORDINAL,
+
+	/** A custom short code, as a String. See {@link AdapterGenerator#setEnumCodes(Class, java.util.Map)}. */
+	CODE
+}
@@ -0,0 +1,89 @@
+package com.codethen.mongo.adapter.generator;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * List view of a source list, that converts each item on its first access and keeps the converted item.
+ * See {@link BaseAdapter#lazyList} and {@link AdapterGenerator#setLazyLists}.
+ *
+ * The list can be modified: all items are converted into a regular list the first time, and that list is used from then on.
+ * Like the models, it's not thread-safe.
+ */
+public class LazyList<S, T> extends AbstractList<T> implements RandomAccess {
+
+	/** Marks the items not converted yet, since converted items may be null */
+	private static final Object notConverted = new Object();
+
+	private List<S> source;
+	private Function<? super S, ? extends T> converter;
+	private Object[] converted;
+
+	/** All the items converted, once the list is modified */
+	private List<T> items;
+
+	public LazyList(List<S> source, Function<? super S, ? extends T> converter) {
+		this.source = source instanceof RandomAccess ? source : new ArrayList<>(source);
+		this.converter = converter;
+		this.converted = new Object[source.size()];
+		Arrays.fill(converted, notConverted);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (items != null) return items.get(index);
+		Object item = converted[index];
+		if (item == notConverted) {
+			item = converter.apply(source.get(index));
+			converted[index] = item;
+		}
+		return (T) item;
+	}
+
+	@Override
+	public int size() {
+		return items != null ? items.size() : converted.length;
+	}
+
+	@Override
+	public T set(int index, T item) {
+		return convertAll().set(index, item);
+	}
+
+	@Override
+	public void add(int index, T item) {
+		convertAll().add(index, item);
+		modCount++;
+	}
+
+	@Override
+	public T remove(int index) {
+		final T removed = convertAll().remove(index);
+		modCount++;
+		return removed;
+	}
+
+	/** Whether the item at the given index is already converted (for testing and debugging) */
+	public boolean isConverted(int index) {
+		return items != null || converted[index] != notConverted;
+	}
+
+	private List<T> convertAll() {
+		if (items == null) {
+			final List<T> all = new ArrayList<>(converted.length);
+			for (int i = 0; i < converted.length; i++) {
+				all.add(get(i));
+			}
+			items = all;
+			source = null;
+			converter = null;
+			converted = null;
+		}
+		return items;
+	}
+}
@@ -0,0 +1,61 @@
+package com.codethen.mongo.adapter.generator;
+
+import com.codethen.mongo.adapter.generator.sample.Person;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+/**
+ * Generator of the {@link Person} adapters, used by AdapterGeneratorExample (and by the benchmarks).
+ *
+ * These methods show a custom mapping. This should be rarely used.
+ * This is a weird example, just to show how you could write your custom mappings.
+ * We store a String field number as an Integer into the database.
+ */
+public class PersonAdapterGenerator extends AdapterGenerator {
+
+	@Override
+	public Object buildModelFieldExtractor(String modelVar, Field modelField) {
+
+		final Object result = super.buildModelFieldExtractor(modelVar, modelField);
+
+		// Example of custom mapping: convert from String to Integer
+		if (modelField.getName().equals("number"))
+			return "Integer.parseInt(" + result + ")";
+
+		return result;
+	}
+
+	@Override
+	public Object buildDocFieldExtractor(String docVar, Field modelField, Type fieldType) {
+
+		// Example of custom mapping: convert from Integer to String
+		if (modelField.getName().equals("number"))
+			return CodeBlock.builder().add("String.valueOf($L)", super.buildDocFieldExtractor(docVar, modelField, Object.class)).build();
+
+		return super.buildDocFieldExtractor(docVar, modelField, fieldType);
+	}
+
+	@Override
+	public TypeName getDocFieldClass(Field modelField) {
+
+		// The same custom mapping, so validate reports the type stored in the database
+		if (modelField.getName().equals("number"))
+			return ClassName.get(Integer.class);
+
+		return super.getDocFieldClass(modelField);
+	}
+
+	@Override
+	public Object buildCodecFieldDecoder(String readerVar, Field modelField, Type fieldType) {
+
+		// Same custom mapping for the codec (the encoding uses buildModelFieldExtractor)
+		if (modelField.getName().equals("number"))
+			return CodeBlock.builder().add("String.valueOf($L.readInt32())", readerVar).build();
+
+		return super.buildCodecFieldDecoder(readerVar, modelField, fieldType);
+	}
+}
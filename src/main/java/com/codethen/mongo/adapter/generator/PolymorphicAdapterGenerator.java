@@ -0,0 +1,370 @@
+package com.codethen.mongo.adapter.generator;
+
+import com.squareup.javapoet.*;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import javax.lang.model.element.Modifier;
+import java.util.*;
+import java.util.function.BiFunction;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Generates an adapter for a base class whose subclasses are stored in the same field or collection.
+ * The adapters of the subclasses must be already generated as codecs (see {@link AdapterGenerator#setGenerateCodec}).
+ *
+ * The class of each model is stored in a discriminator field, with a short value per subclass.
+ * Documents are dispatched with a switch on the discriminator, and models with checks of their exact class
+ * (falling back to instanceof, most specific first, for subclasses like the lazy or raw models). No maps or reflection are used.
+ *
+ * See {@link AdapterGeneratorContext#createPolymorphicAdapter}.
+ */
+public class PolymorphicAdapterGenerator {
+
+	private Class<?> baseClass;
+
+	/** Discriminator values, by model class */
+	private Map<Class<?>, String> subclasses = new LinkedHashMap<>();
+
+	/** Class of the documents that have no discriminator (e.g. stored before the subclasses existed). See {@link #setDefaultClass}. */
+	private Class<?> defaultClass;
+
+	private String discriminatorField = "_t";
+
+	private AdapterGeneratorContext context;
+
+	/** Adapters of the subclasses, taken from the context when building */
+	private Map<Class<?>, TypeSpec> subclassAdapters;
+
+	private final static String instanceVar = "INSTANCE";
+
+	/** Names of the variables of the generated methods */
+	private String modelVar = "model";
+	private String docVar = "doc";
+	private String targetVar = "target";
+	private String beforeVar = "before";
+	private String afterVar = "after";
+	private String setVar = "set";
+	private String unsetVar = "unset";
+	private String prefixVar = "prefix";
+	private String violationsVar = "violations";
+	private String writerVar = "writer";
+	private String readerVar = "reader";
+	private String ctxVar = "ctx";
+	private String discriminatorVar = "discriminator";
+	private String clazzVar = "clazz";
+
+
+	public AdapterGeneratorContext getContext() {
+		return context;
+	}
+
+	public void setContext(AdapterGeneratorContext context) {
+		this.context = context;
+	}
+
+	public Class<?> getBaseClass() {
+		return baseClass;
+	}
+
+	public void setBaseClass(Class<?> baseClass) {
+		this.baseClass = baseClass;
+	}
+
+	public Map<Class<?>, String> getSubclasses() {
+		return subclasses;
+	}
+
+	/** Discriminator values (keep them short, they are stored in every document) by model class. The base class may be included. */
+	public void setSubclasses(Map<Class<?>, String> subclasses) {
+		this.subclasses = subclasses;
+	}
+
+	public void addSubclass(Class<?> modelClass, String discriminator) {
+		subclasses.put(modelClass, discriminator);
+	}
+
+	public Class<?> getDefaultClass() {
+		return defaultClass;
+	}
+
+	/**
+	 * Documents without discriminator are converted to this class, so a field or collection can become polymorphic
+	 * without migrating its documents. By default, they are rejected.
+	 */
+	public void setDefaultClass(Class<?> defaultClass) {
+		this.defaultClass = defaultClass;
+	}
+
+	public String getDiscriminatorField() {
+		return discriminatorField;
+	}
+
+	public void setDiscriminatorField(String discriminatorField) {
+		this.discriminatorField = discriminatorField;
+	}
+
+	public String getAdapterName() {
+		return baseClass.getSimpleName() + "PolymorphicAdapter";
+	}
+
+
+	public TypeSpec build() {
+
+		if (baseClass == null) throw new IllegalArgumentException("The base class of the polymorphic adapter is needed");
+		if (subclasses.isEmpty()) throw new IllegalArgumentException("The subclasses of " + baseClass + " are needed");
+		if (defaultClass != null && !subclasses.containsKey(defaultClass)) {
+			throw new IllegalArgumentException("The default class must be one of the subclasses: " + defaultClass);
+		}
+
+		subclassAdapters = new LinkedHashMap<>();
+		final Set<String> discriminators = new HashSet<>();
+		for (Map.Entry<Class<?>, String> subclass : subclasses.entrySet()) {
+			if (!baseClass.isAssignableFrom(subclass.getKey())) throw new IllegalArgumentException(subclass.getKey() + " is not a subclass of " + baseClass);
+			if (subclass.getValue().isEmpty() || !discriminators.add(subclass.getValue())) {
+				throw new IllegalArgumentException("Discriminators must be unique and not empty: " + subclass.getValue());
+			}
+			final TypeSpec adapter = context.getAdapters().get(subclass.getKey());
+			if (adapter == null) throw new IllegalArgumentException("The adapter for " + subclass.getKey() + " must be already generated");
+			if (!AdapterGeneratorContext.isCodec(adapter)) throw new IllegalArgumentException("Adapter for type " + subclass.getKey() + " must be generated as a codec too");
+			subclassAdapters.put(subclass.getKey(), adapter);
+		}
+
+		final String adapterName = getAdapterName();
+
+		return TypeSpec.classBuilder(adapterName)
+			.addJavadoc("Adapter for $T and its subclasses, stored with the discriminator $S\n", baseClass, discriminatorField)
+			.addModifiers(Modifier.PUBLIC)
+			.superclass(ParameterizedTypeName.get(ClassName.get(BasePolymorphicAdapter.class), ClassName.get(baseClass)))
+			.addField(FieldSpec.builder(ClassName.bestGuess(adapterName), instanceVar, Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+				.initializer("new $L()", adapterName)
+				.build())
+			.addMethod(MethodSpec.constructorBuilder()
+				.addModifiers(Modifier.PUBLIC)
+				.addStatement("super($S)", discriminatorField)
+				.build())
+			.addMethod(build_newModelInstance())
+			.addMethod(build_model2doc())
+			.addMethod(build_doc2model())
+			.addMethod(build_doc2modelRefill())
+			.addMethod(build_appendUpdate())
+			.addMethod(build_validate())
+			.addMethod(build_getEncoderClass())
+			.addMethod(build_encode())
+			.addMethod(build_decode())
+			.addMethod(build_decodeInto())
+			.build();
+	}
+
+	/** The model class is given by the discriminator, so a new model is only created for the default class */
+	private MethodSpec build_newModelInstance() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("newModelInstance")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(baseClass);
+		if (defaultClass != null) {
+			methodBuilder.addStatement("return $N.$L.newModelInstance()", subclassAdapters.get(defaultClass), instanceVar);
+		} else {
+			methodBuilder.addStatement("throw new $T($S)", UnsupportedOperationException.class, "The model class is given by the discriminator");
+		}
+		return methodBuilder.build();
+	}
+
+	private MethodSpec build_model2doc() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("model2doc")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(Document.class)
+			.addParameter(baseClass, modelVar)
+			.addStatement("if ($L == null) return null", modelVar);
+		addClassDispatch(methodBuilder, modelVar, (subclass, adapter) ->
+			statement("return withDiscriminator($L.model2doc($L), $S)", adapter, cast(subclass, modelVar), subclasses.get(subclass)));
+		return methodBuilder.build();
+	}
+
+	private MethodSpec build_doc2model() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("doc2model")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(baseClass)
+			.addParameter(Document.class, docVar)
+			.addStatement("if ($L == null) return null", docVar);
+		addDiscriminatorSwitch(methodBuilder, CodeBlock.of("getDiscriminator($L)", docVar),
+			(subclass, adapter) -> statement("return $L.doc2model($L)", adapter, docVar),
+			statement("throw unknownDiscriminator($L)", discriminatorVar));
+		return methodBuilder.build();
+	}
+
+	/** The target is refilled if it's of the class of the document, otherwise a new model is created */
+	private MethodSpec build_doc2modelRefill() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("doc2model")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(baseClass)
+			.addParameter(Document.class, docVar)
+			.addParameter(baseClass, targetVar)
+			.addStatement("if ($L == null) return null", docVar);
+		addDiscriminatorSwitch(methodBuilder, CodeBlock.of("getDiscriminator($L)", docVar),
+			(subclass, adapter) -> statement("return $L != null && $L.getClass() == $T.class ? $L.doc2model($L, $L) : $L.doc2model($L)",
+				targetVar, targetVar, subclass, adapter, docVar, cast(subclass, targetVar), adapter, docVar),
+			statement("throw unknownDiscriminator($L)", discriminatorVar));
+		return methodBuilder.build();
+	}
+
+	/** Models of the same class are compared field by field, otherwise the whole model is replaced */
+	private MethodSpec build_appendUpdate() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("appendUpdate")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.addParameter(Document.class, setVar)
+			.addParameter(Document.class, unsetVar)
+			.addParameter(String.class, prefixVar)
+			.addParameter(baseClass, beforeVar)
+			.addParameter(baseClass, afterVar)
+			.beginControlFlow("if ($L.getClass() != $L.getClass())", beforeVar, afterVar)
+			.addStatement("updateOtherClass($L, $L, $L, model2doc($L), model2doc($L))", setVar, unsetVar, prefixVar, beforeVar, afterVar)
+			.addStatement("return")
+			.endControlFlow();
+		addClassDispatch(methodBuilder, afterVar, (subclass, adapter) -> statementAndReturn("$L.appendUpdate($L, $L, $L, $L, $L)",
+			adapter, setVar, unsetVar, prefixVar, cast(subclass, beforeVar), cast(subclass, afterVar)));
+		return methodBuilder.build();
+	}
+
+	private MethodSpec build_validate() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("validate")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.addParameter(Document.class, docVar)
+			.addParameter(String.class, prefixVar)
+			.addParameter(ParameterizedTypeName.get(List.class, String.class), violationsVar);
+		addDiscriminatorSwitch(methodBuilder, CodeBlock.of("getDiscriminator($L)", docVar),
+			(subclass, adapter) -> statementAndReturn("$L.validate($L, $L, $L)", adapter, docVar, prefixVar, violationsVar),
+			statement("validateDiscriminator($L, $L, $L)", violationsVar, prefixVar, discriminatorVar));
+		return methodBuilder.build();
+	}
+
+	private MethodSpec build_getEncoderClass() {
+		return MethodSpec.methodBuilder("getEncoderClass")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(ParameterizedTypeName.get(ClassName.get(Class.class), ClassName.get(baseClass)))
+			.addStatement("return $T.class", baseClass)
+			.build();
+	}
+
+	private MethodSpec build_encode() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("encode")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.addParameter(BsonWriter.class, writerVar)
+			.addParameter(baseClass, modelVar)
+			.addParameter(EncoderContext.class, ctxVar);
+		addClassDispatch(methodBuilder, modelVar, (subclass, adapter) -> statementAndReturn("encodeSubclass($L, $L, $S, $L, $L)",
+			writerVar, adapter, subclasses.get(subclass), cast(subclass, modelVar), ctxVar));
+		return methodBuilder.build();
+	}
+
+	/** The discriminator is read first (see {@link BasePolymorphicAdapter#readDiscriminator}), and then the adapter of its class reads the document */
+	private MethodSpec build_decode() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("decode")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(baseClass)
+			.addParameter(BsonReader.class, readerVar)
+			.addParameter(DecoderContext.class, ctxVar);
+		addDiscriminatorSwitch(methodBuilder, CodeBlock.of("readDiscriminator($L)", readerVar),
+			(subclass, adapter) -> statement("return $L.decode($L, $L)", adapter, readerVar, ctxVar),
+			statement("throw unknownDiscriminator($L)", discriminatorVar));
+		return methodBuilder.build();
+	}
+
+	/** Reads into a given model, so its class gives the adapter */
+	private MethodSpec build_decodeInto() {
+		final MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder("decodeInto")
+			.addAnnotation(Override.class)
+			.addModifiers(Modifier.PUBLIC)
+			.returns(baseClass)
+			.addParameter(BsonReader.class, readerVar)
+			.addParameter(baseClass, modelVar)
+			.addParameter(DecoderContext.class, ctxVar);
+		addClassDispatch(methodBuilder, modelVar, (subclass, adapter) ->
+			statement("return $L.decodeInto($L, $L, $L)", adapter, readerVar, cast(subclass, modelVar), ctxVar));
+		return methodBuilder.build();
+	}
+
+	/**
+	 * Adds the statements of each subclass, run when the model is of that class: first checking the exact class,
+	 * then with instanceof, most specific classes first. Throws if no subclass matches.
+	 */
+	private void addClassDispatch(MethodSpec.Builder methodBuilder, String var, BiFunction<Class<?>, CodeBlock, CodeBlock> statements) {
+
+		methodBuilder.addStatement("final $T<?> $L = $L.getClass()", Class.class, clazzVar, var);
+		for (Class<?> subclass : subclasses.keySet()) {
+			methodBuilder
+				.beginControlFlow("if ($L == $T.class)", clazzVar, subclass)
+				.addCode(statements.apply(subclass, adapterInstance(subclass)))
+				.endControlFlow();
+		}
+
+		final List<Class<?>> mostSpecificFirst = subclasses.keySet().stream()
+			.sorted(Comparator.comparingInt(PolymorphicAdapterGenerator::depth).reversed())
+			.collect(toList());
+		for (Class<?> subclass : mostSpecificFirst) {
+			methodBuilder
+				.beginControlFlow("if ($L instanceof $T)", var, subclass)
+				.addCode(statements.apply(subclass, adapterInstance(subclass)))
+				.endControlFlow();
+		}
+
+		methodBuilder.addStatement("throw unknownClass($L)", var);
+	}
+
+	/** Adds a switch on the discriminator with a case per subclass. Documents without discriminator go to the {@link #defaultClass}. */
+	private void addDiscriminatorSwitch(MethodSpec.Builder methodBuilder, CodeBlock discriminator,
+										BiFunction<Class<?>, CodeBlock, CodeBlock> statements, CodeBlock otherwise) {
+
+		methodBuilder
+			.addStatement("final $T $L = $L", String.class, discriminatorVar, discriminator)
+			.beginControlFlow("switch ($L)", discriminatorVar);
+
+		for (Map.Entry<Class<?>, String> subclass : subclasses.entrySet()) {
+			methodBuilder.addCode("case $S:\n", subclass.getValue());
+			if (subclass.getKey().equals(defaultClass)) methodBuilder.addCode("case $S:\n", "");
+			methodBuilder.addCode(CodeBlock.builder().indent()
+				.add(statements.apply(subclass.getKey(), adapterInstance(subclass.getKey())))
+				.unindent().build());
+		}
+
+		methodBuilder
+			.addCode("default:\n")
+			.addCode(CodeBlock.builder().indent().add(otherwise).unindent().build())
+			.endControlFlow();
+	}
+
+	private static CodeBlock statement(String format, Object... args) {
+		return CodeBlock.builder().addStatement(format, args).build();
+	}
+
+	private static CodeBlock statementAndReturn(String format, Object... args) {
+		return CodeBlock.builder().addStatement(format, args).addStatement("return").build();
+	}
+
+	private CodeBlock adapterInstance(Class<?> subclass) {
+		return CodeBlock.of("$N.$L", subclassAdapters.get(subclass), instanceVar);
+	}
+
+	private CodeBlock cast(Class<?> subclass, String var) {
+		if (subclass.equals(baseClass)) return CodeBlock.of("$L", var);
+		return CodeBlock.of("($T) $L", subclass, var);
+	}
+
+	private static int depth(Class<?> clazz) {
+		int depth = 0;
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) depth++;
+		return depth;
+	}
+}
@@ -0,0 +1,13 @@
+package com.codethen.mongo.adapter.generator;
+
+import org.bson.RawBsonDocument;
+
+/**
+ * Model that keeps the BSON it was decoded from, so it can be written back as is if it didn't change.
+ * Implemented by the Raw models generated with {@link AdapterGenerator#setGenerateRaw}.
+ */
+public interface RawModel {
+
+	/** The original BSON, or null if the model may have changed */
+	RawBsonDocument getRawDocument();
+}
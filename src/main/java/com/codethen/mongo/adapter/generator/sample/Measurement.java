@@ -0,0 +1,51 @@
+package com.codethen.mongo.adapter.generator.sample;
+
+public class Measurement {
+
+	private String id;
+	private String sensor;
+	private long[] times;
+	private int[] counts;
+	private double[] values;
+
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getSensor() {
+		return sensor;
+	}
+
+	public void setSensor(String sensor) {
+		this.sensor = sensor;
+	}
+
+	public long[] getTimes() {
+		return times;
+	}
+
+	public void setTimes(long[] times) {
+		this.times = times;
+	}
+
+	public int[] getCounts() {
+		return counts;
+	}
+
+	public void setCounts(int[] counts) {
+		this.counts = counts;
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+
+	public void setValues(double[] values) {
+		this.values = values;
+	}
+}
@@ -0,0 +1,29 @@
+package com.codethen.mongo.adapter.generator.sample.adapter;
+
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import com.codethen.mongo.adapter.generator.sample.Measurement;
+import com.codethen.mongo.adapter.generator.sample.Person;
+import java.lang.Class;
+import java.lang.Override;
+import java.lang.SuppressWarnings;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Provides the adapters generated as codecs
+ */
+@SuppressWarnings("unchecked")
+public class AdapterCodecProvider implements CodecProvider {
+  public static final AdapterCodecProvider INSTANCE = new AdapterCodecProvider();
+
+  @Override
+  public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+    if (clazz == Address.class) return (Codec<T>) AddressPolymorphicAdapter.INSTANCE;
+    if (clazz == AddressExt.class) return (Codec<T>) AddressExtAdapter.INSTANCE;
+    if (clazz == Measurement.class) return (Codec<T>) MeasurementAdapter.INSTANCE;
+    if (clazz == Person.class) return (Codec<T>) PersonAdapter.INSTANCE;
+    return null;
+  }
+}
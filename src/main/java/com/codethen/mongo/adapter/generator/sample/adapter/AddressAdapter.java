@@ -1,14 +1,22 @@
 package com.codethen.mongo.adapter.generator.sample.adapter;
 
-import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
 import com.codethen.mongo.adapter.generator.sample.Address;
+import java.lang.Class;
+import java.lang.Integer;
 import java.lang.Override;
 import java.lang.String;
 import java.lang.SuppressWarnings;
+import java.util.List;
+import java.util.Objects;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
 import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
 
 @SuppressWarnings("unchecked")
-public class AddressAdapter<T extends Address> extends BaseDocumentAdapter<T> {
+public class AddressAdapter<T extends Address> extends BaseCodecAdapter<T> {
   public static final Fields fields = new Fields();
 
   public static final AddressAdapter<Address> INSTANCE = new AddressAdapter<>();
@@ -36,9 +44,127 @@ public class AddressAdapter<T extends Address> extends BaseDocumentAdapter<T> {
     return model;
   }
 
-  public static class Fields extends BaseDocumentAdapter.Fields {
+  @Override
+  public T doc2model(Document doc, T target) {
+    final T model = refillTarget(doc, target);
+    if (model == null) return null;
+    model.setStreet((String) doc.get(fields.street));
+    model.setNumber((int) doc.get(fields.number));
+    return model;
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, T before, T after) {
+    super.appendUpdate(set, unset, prefix, before, after);
+    if (!Objects.equals(before.getStreet(), after.getStreet())) {
+      updateValue(set, unset, prefix, fields.street, after.getStreet());
+    }
+    if (before.getNumber() != after.getNumber()) {
+      updateValue(set, unset, prefix, fields.number, after.getNumber());
+    }
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    super.validate(doc, prefix, violations);
+    validateValue(violations, prefix, fields.street, doc.get(fields.street), String.class, () -> (String) doc.get(fields.street));
+    if (validatePresent(violations, prefix, fields.number, doc.get(fields.number))) validateValue(violations, prefix, fields.number, doc.get(fields.number), Integer.class, () -> (int) doc.get(fields.number));
+  }
+
+  /**
+   * Returns a {@link Lazy} model, that converts each field from the document on the first call to its getter
+   */
+  public Address doc2modelLazy(Document doc) {
+    if (doc == null) return null;
+    return new Lazy(doc);
+  }
+
+  public List<Address> doc2modelLazy(List<Document> docs) {
+    return mapToList(docs, this::doc2modelLazy);
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return (Class<T>) Address.class;
+  }
+
+  @Override
+  public void encodeFields(BsonWriter writer, T model, EncoderContext ctx) {
+    super.encodeFields(writer, model, ctx);
+    encodeField(writer, fields.street, model.getStreet());
+    encodeField(writer, fields.number, model.getNumber());
+  }
+
+  @Override
+  public boolean decodeField(BsonReader reader, String docField, T model, DecoderContext ctx) {
+    switch (docField) {
+      case "str":
+        model.setStreet(reader.readString());
+        return true;
+      case "num":
+        model.setNumber(reader.readInt32());
+        return true;
+    }
+    return super.decodeField(reader, docField, model, ctx);
+  }
+
+  public static class Fields extends BaseCodecAdapter.Fields {
     public final String street = "str";
 
     public final String number = "num";
   }
+
+  /**
+   * {@link Address} that keeps the document and converts each field on the first call to its getter.
+   * Setters mark their field as converted, so the value in the document is ignored. It's not thread-safe.
+   */
+  public class Lazy extends Address {
+    private final Document doc;
+
+    private boolean streetLoaded;
+
+    private boolean numberLoaded;
+
+    Lazy(Document doc) {
+      this.doc = doc;
+    }
+
+    @Override
+    public String getStreet() {
+      if (!streetLoaded) {
+        super.setStreet((String) doc.get(fields.street));
+        streetLoaded = true;
+      }
+      return super.getStreet();
+    }
+
+    @Override
+    public void setStreet(String street) {
+      streetLoaded = true;
+      super.setStreet(street);
+    }
+
+    @Override
+    public int getNumber() {
+      if (!numberLoaded) {
+        super.setNumber((int) doc.get(fields.number));
+        numberLoaded = true;
+      }
+      return super.getNumber();
+    }
+
+    @Override
+    public void setNumber(int number) {
+      numberLoaded = true;
+      super.setNumber(number);
+    }
+
+    /**
+     * Converts the fields that were not converted yet (e.g. before serializing the model by its fields)
+     */
+    public void loadAll() {
+      getStreet();
+      getNumber();
+    }
+  }
 }
@@ -0,0 +1,181 @@
+package com.codethen.mongo.adapter.generator.sample.adapter;
+
+import com.codethen.mongo.adapter.generator.BasePolymorphicAdapter;
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
+import java.lang.Class;
+import java.lang.Override;
+import java.lang.String;
+import java.util.List;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Adapter for Address and its subclasses, stored with the discriminator "_t"
+ */
+public class AddressPolymorphicAdapter extends BasePolymorphicAdapter<Address> {
+  public static final AddressPolymorphicAdapter INSTANCE = new AddressPolymorphicAdapter();
+
+  public AddressPolymorphicAdapter() {
+    super("_t");
+  }
+
+  @Override
+  public Address newModelInstance() {
+    return AddressAdapter.INSTANCE.newModelInstance();
+  }
+
+  @Override
+  public Document model2doc(Address model) {
+    if (model == null) return null;
+    final Class<?> clazz = model.getClass();
+    if (clazz == Address.class) {
+      return withDiscriminator(AddressAdapter.INSTANCE.model2doc(model), "a");
+    }
+    if (clazz == AddressExt.class) {
+      return withDiscriminator(AddressExtAdapter.INSTANCE.model2doc((AddressExt) model), "ext");
+    }
+    if (model instanceof AddressExt) {
+      return withDiscriminator(AddressExtAdapter.INSTANCE.model2doc((AddressExt) model), "ext");
+    }
+    if (model instanceof Address) {
+      return withDiscriminator(AddressAdapter.INSTANCE.model2doc(model), "a");
+    }
+    throw unknownClass(model);
+  }
+
+  @Override
+  public Address doc2model(Document doc) {
+    if (doc == null) return null;
+    final String discriminator = getDiscriminator(doc);
+    switch (discriminator) {
+      case "a":
+      case "":
+        return AddressAdapter.INSTANCE.doc2model(doc);
+      case "ext":
+        return AddressExtAdapter.INSTANCE.doc2model(doc);
+      default:
+        throw unknownDiscriminator(discriminator);
+    }
+  }
+
+  @Override
+  public Address doc2model(Document doc, Address target) {
+    if (doc == null) return null;
+    final String discriminator = getDiscriminator(doc);
+    switch (discriminator) {
+      case "a":
+      case "":
+        return target != null && target.getClass() == Address.class ? AddressAdapter.INSTANCE.doc2model(doc, target) : AddressAdapter.INSTANCE.doc2model(doc);
+      case "ext":
+        return target != null && target.getClass() == AddressExt.class ? AddressExtAdapter.INSTANCE.doc2model(doc, (AddressExt) target) : AddressExtAdapter.INSTANCE.doc2model(doc);
+      default:
+        throw unknownDiscriminator(discriminator);
+    }
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, Address before,
+      Address after) {
+    if (before.getClass() != after.getClass()) {
+      updateOtherClass(set, unset, prefix, model2doc(before), model2doc(after));
+      return;
+    }
+    final Class<?> clazz = after.getClass();
+    if (clazz == Address.class) {
+      AddressAdapter.INSTANCE.appendUpdate(set, unset, prefix, before, after);
+      return;
+    }
+    if (clazz == AddressExt.class) {
+      AddressExtAdapter.INSTANCE.appendUpdate(set, unset, prefix, (AddressExt) before, (AddressExt) after);
+      return;
+    }
+    if (after instanceof AddressExt) {
+      AddressExtAdapter.INSTANCE.appendUpdate(set, unset, prefix, (AddressExt) before, (AddressExt) after);
+      return;
+    }
+    if (after instanceof Address) {
+      AddressAdapter.INSTANCE.appendUpdate(set, unset, prefix, before, after);
+      return;
+    }
+    throw unknownClass(after);
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    final String discriminator = getDiscriminator(doc);
+    switch (discriminator) {
+      case "a":
+      case "":
+        AddressAdapter.INSTANCE.validate(doc, prefix, violations);
+        return;
+      case "ext":
+        AddressExtAdapter.INSTANCE.validate(doc, prefix, violations);
+        return;
+      default:
+        validateDiscriminator(violations, prefix, discriminator);
+    }
+  }
+
+  @Override
+  public Class<Address> getEncoderClass() {
+    return Address.class;
+  }
+
+  @Override
+  public void encode(BsonWriter writer, Address model, EncoderContext ctx) {
+    final Class<?> clazz = model.getClass();
+    if (clazz == Address.class) {
+      encodeSubclass(writer, AddressAdapter.INSTANCE, "a", model, ctx);
+      return;
+    }
+    if (clazz == AddressExt.class) {
+      encodeSubclass(writer, AddressExtAdapter.INSTANCE, "ext", (AddressExt) model, ctx);
+      return;
+    }
+    if (model instanceof AddressExt) {
+      encodeSubclass(writer, AddressExtAdapter.INSTANCE, "ext", (AddressExt) model, ctx);
+      return;
+    }
+    if (model instanceof Address) {
+      encodeSubclass(writer, AddressAdapter.INSTANCE, "a", model, ctx);
+      return;
+    }
+    throw unknownClass(model);
+  }
+
+  @Override
+  public Address decode(BsonReader reader, DecoderContext ctx) {
+    final String discriminator = readDiscriminator(reader);
+    switch (discriminator) {
+      case "a":
+      case "":
+        return AddressAdapter.INSTANCE.decode(reader, ctx);
+      case "ext":
+        return AddressExtAdapter.INSTANCE.decode(reader, ctx);
+      default:
+        throw unknownDiscriminator(discriminator);
+    }
+  }
+
+  @Override
+  public Address decodeInto(BsonReader reader, Address model, DecoderContext ctx) {
+    final Class<?> clazz = model.getClass();
+    if (clazz == Address.class) {
+      return AddressAdapter.INSTANCE.decodeInto(reader, model, ctx);
+    }
+    if (clazz == AddressExt.class) {
+      return AddressExtAdapter.INSTANCE.decodeInto(reader, (AddressExt) model, ctx);
+    }
+    if (model instanceof AddressExt) {
+      return AddressExtAdapter.INSTANCE.decodeInto(reader, (AddressExt) model, ctx);
+    }
+    if (model instanceof Address) {
+      return AddressAdapter.INSTANCE.decodeInto(reader, model, ctx);
+    }
+    throw unknownClass(model);
+  }
+}
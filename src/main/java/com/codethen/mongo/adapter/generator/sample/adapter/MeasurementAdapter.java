@@ -0,0 +1,159 @@
+package com.codethen.mongo.adapter.generator.sample.adapter;
+
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.sample.Measurement;
+import java.lang.Class;
+import java.lang.Override;
+import java.lang.String;
+import java.lang.SuppressWarnings;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+@SuppressWarnings("unchecked")
+public class MeasurementAdapter<T extends Measurement> extends BaseCodecAdapter<T> {
+  public static final Fields fields = new Fields();
+
+  public static final MeasurementAdapter<Measurement> INSTANCE = new MeasurementAdapter<>();
+
+  @Override
+  public T newModelInstance() {
+    return (T) new Measurement();
+  }
+
+  @Override
+  public Document model2doc(T model) {
+    final Document doc = super.model2doc(model);
+    if (doc == null) return null;
+    appendTo(doc, fields.id, string2id(model.getId()));
+    appendTo(doc, fields.sensor, model.getSensor());
+    appendTo(doc, fields.times, array2list(model.getTimes()));
+    appendTo(doc, fields.counts, array2list(model.getCounts()));
+    appendTo(doc, fields.values, array2binary(model.getValues()));
+    return doc;
+  }
+
+  @Override
+  public T doc2model(Document doc) {
+    final T model = super.doc2model(doc);
+    if (model == null) return null;
+    model.setId(id2string((ObjectId) doc.get(fields.id)));
+    model.setSensor((String) doc.get(fields.sensor));
+    model.setTimes(obj2longs(doc.get(fields.times)));
+    model.setCounts(obj2ints(doc.get(fields.counts)));
+    model.setValues(obj2doubles(doc.get(fields.values)));
+    return model;
+  }
+
+  @Override
+  public T doc2model(Document doc, T target) {
+    final T model = refillTarget(doc, target);
+    if (model == null) return null;
+    model.setId(id2string((ObjectId) doc.get(fields.id)));
+    model.setSensor((String) doc.get(fields.sensor));
+    model.setTimes(obj2longs(doc.get(fields.times)));
+    model.setCounts(obj2ints(doc.get(fields.counts)));
+    model.setValues(obj2doubles(doc.get(fields.values)));
+    return model;
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, T before, T after) {
+    super.appendUpdate(set, unset, prefix, before, after);
+    if (!Objects.equals(before.getId(), after.getId())) {
+      updateValue(set, unset, prefix, fields.id, string2id(after.getId()));
+    }
+    if (!Objects.equals(before.getSensor(), after.getSensor())) {
+      updateValue(set, unset, prefix, fields.sensor, after.getSensor());
+    }
+    if (!Arrays.equals(before.getTimes(), after.getTimes())) {
+      updateValue(set, unset, prefix, fields.times, array2list(after.getTimes()));
+    }
+    if (!Arrays.equals(before.getCounts(), after.getCounts())) {
+      updateValue(set, unset, prefix, fields.counts, array2list(after.getCounts()));
+    }
+    if (!Arrays.equals(before.getValues(), after.getValues())) {
+      updateValue(set, unset, prefix, fields.values, array2binary(after.getValues()));
+    }
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    super.validate(doc, prefix, violations);
+    validateValue(violations, prefix, fields.id, doc.get(fields.id), ObjectId.class, () -> id2string((ObjectId) doc.get(fields.id)));
+    validateValue(violations, prefix, fields.sensor, doc.get(fields.sensor), String.class, () -> (String) doc.get(fields.sensor));
+    validateValue(violations, prefix, fields.times, doc.get(fields.times), List.class, () -> obj2longs(doc.get(fields.times)));
+    validateValue(violations, prefix, fields.counts, doc.get(fields.counts), List.class, () -> obj2ints(doc.get(fields.counts)));
+    validateValue(violations, prefix, fields.values, doc.get(fields.values), List.class, () -> obj2doubles(doc.get(fields.values)));
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return (Class<T>) Measurement.class;
+  }
+
+  @Override
+  public void encodeFields(BsonWriter writer, T model, EncoderContext ctx) {
+    super.encodeFields(writer, model, ctx);
+    encodeObjectId(writer, fields.id, model.getId());
+    encodeField(writer, fields.sensor, model.getSensor());
+    encodeArray(writer, fields.times, model.getTimes());
+    encodeArray(writer, fields.counts, model.getCounts());
+    encodePacked(writer, fields.values, model.getValues());
+  }
+
+  @Override
+  public boolean decodeField(BsonReader reader, String docField, T model, DecoderContext ctx) {
+    switch (docField) {
+      case "_id":
+        model.setId(readObjectId(reader));
+        return true;
+      case "a":
+        model.setSensor(reader.readString());
+        return true;
+      case "b":
+        model.setTimes(readLongs(reader));
+        return true;
+      case "c":
+        model.setCounts(readInts(reader));
+        return true;
+      case "d":
+        model.setValues(readDoubles(reader));
+        return true;
+    }
+    return super.decodeField(reader, docField, model, ctx);
+  }
+
+  /**
+   * Compact keys, that save about 17 bytes per document. See {@link com.codethen.mongo.adapter.generator.CompactKeys}.
+   */
+  public static class Fields extends BaseCodecAdapter.Fields {
+    public final String id = "_id";
+
+    /**
+     * Compact key of "sensor"
+     */
+    public final String sensor = "a";
+
+    /**
+     * Compact key of "times"
+     */
+    public final String times = "b";
+
+    /**
+     * Compact key of "counts"
+     */
+    public final String counts = "c";
+
+    /**
+     * Compact key of "vals"
+     */
+    public final String values = "d";
+  }
+}
@@ -1,21 +1,39 @@
 package com.codethen.mongo.adapter.generator.sample.adapter;
 
-import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.AddressExt;
 import com.codethen.mongo.adapter.generator.sample.Person;
+import com.mongodb.client.model.Projections;
+import java.lang.Boolean;
+import java.lang.Class;
+import java.lang.IllegalArgumentException;
+import java.lang.Integer;
 import java.lang.Object;
 import java.lang.Override;
 import java.lang.String;
 import java.lang.SuppressWarnings;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
 import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
 @SuppressWarnings("unchecked")
-public class PersonAdapter<T extends Person> extends BaseDocumentAdapter<T> {
+public class PersonAdapter<T extends Person> extends BaseCodecAdapter<T> {
   public static final Fields fields = new Fields();
 
   public static final PersonAdapter<Person> INSTANCE = new PersonAdapter<>();
 
+  public static final Bson SUMMARY_PROJECTION = Projections.fields(Projections.include(fields.name, fields.age, fields.gender), Projections.excludeId());
+
+  private static final Person.Gender[] GENDER_VALUES = Person.Gender.values();
+
   @Override
   public T newModelInstance() {
     return (T) new Person();
@@ -32,8 +50,8 @@ public class PersonAdapter<T extends Person> extends BaseDocumentAdapter<T> {
     appendTo(doc, fields.age, model.getAge());
     appendTo(doc, fields.number, Integer.parseInt(model.getNumber()));
     appendTo(doc, fields.famous, model.isFamous());
-    appendTo(doc, fields.gender, enum2obj(model.getGender()));
-    appendTo(doc, fields.preferredGenders, enum2obj(model.getPreferredGenders()));
+    appendTo(doc, fields.gender, gender2code(model.getGender()));
+    appendTo(doc, fields.preferredGenders, gender2ordinal(model.getPreferredGenders()));
     appendTo(doc, fields.address, AddressExtAdapter.INSTANCE.model2doc(model.getAddress()));
     appendTo(doc, fields.otherAddresses, AddressAdapter.INSTANCE.model2doc(model.getOtherAddresses()));
     return doc;
@@ -50,14 +68,217 @@ public class PersonAdapter<T extends Person> extends BaseDocumentAdapter<T> {
     model.setAge((int) doc.get(fields.age));
     model.setNumber(String.valueOf(doc.get(fields.number)));
     model.setFamous((boolean) doc.get(fields.famous));
-    model.setGender(obj2enum(doc.get(fields.gender), Person.Gender.class));
-    model.setPreferredGenders(obj2enum((List<Object>) doc.get(fields.preferredGenders), Person.Gender.class));
+    model.setGender(code2gender(doc.get(fields.gender)));
+    model.setPreferredGenders(ordinal2gender((List<Object>) doc.get(fields.preferredGenders)));
     model.setAddress(AddressExtAdapter.INSTANCE.doc2model((Document) doc.get(fields.address)));
     model.setOtherAddresses(AddressAdapter.INSTANCE.doc2model((List<Document>) doc.get(fields.otherAddresses)));
     return model;
   }
 
-  public static class Fields extends BaseDocumentAdapter.Fields {
+  @Override
+  public T doc2model(Document doc, T target) {
+    final T model = refillTarget(doc, target);
+    if (model == null) return null;
+    model.setId(id2string((ObjectId) doc.get(fields.id)));
+    model.setFriendIds(refillList((List<ObjectId>) doc.get(fields.friendIds), model.getFriendIds(), (value, previous) -> id2string(value)));
+    model.setName((String) doc.get(fields.name));
+    model.setNicknames((List<String>) doc.get(fields.nicknames));
+    model.setAge((int) doc.get(fields.age));
+    model.setNumber(String.valueOf(doc.get(fields.number)));
+    model.setFamous((boolean) doc.get(fields.famous));
+    model.setGender(code2gender(doc.get(fields.gender)));
+    model.setPreferredGenders(refillList((List<Object>) doc.get(fields.preferredGenders), model.getPreferredGenders(), (value, previous) -> ordinal2gender(value)));
+    model.setAddress(AddressExtAdapter.INSTANCE.doc2model((Document) doc.get(fields.address), model.getAddress()));
+    model.setOtherAddresses(AddressAdapter.INSTANCE.doc2model((List<Document>) doc.get(fields.otherAddresses), model.getOtherAddresses()));
+    return model;
+  }
+
+  @Override
+  public void appendUpdate(Document set, Document unset, String prefix, T before, T after) {
+    super.appendUpdate(set, unset, prefix, before, after);
+    if (!Objects.equals(before.getId(), after.getId())) {
+      updateValue(set, unset, prefix, fields.id, string2id(after.getId()));
+    }
+    if (!Objects.equals(before.getFriendIds(), after.getFriendIds())) {
+      updateValue(set, unset, prefix, fields.friendIds, string2id(after.getFriendIds()));
+    }
+    if (!Objects.equals(before.getName(), after.getName())) {
+      updateValue(set, unset, prefix, fields.name, after.getName());
+    }
+    if (!Objects.equals(before.getNicknames(), after.getNicknames())) {
+      updateValue(set, unset, prefix, fields.nicknames, after.getNicknames());
+    }
+    if (before.getAge() != after.getAge()) {
+      updateValue(set, unset, prefix, fields.age, after.getAge());
+    }
+    if (!Objects.equals(before.getNumber(), after.getNumber())) {
+      updateValue(set, unset, prefix, fields.number, Integer.parseInt(after.getNumber()));
+    }
+    if (before.isFamous() != after.isFamous()) {
+      updateValue(set, unset, prefix, fields.famous, after.isFamous());
+    }
+    if (!Objects.equals(before.getGender(), after.getGender())) {
+      updateValue(set, unset, prefix, fields.gender, gender2code(after.getGender()));
+    }
+    if (!Objects.equals(before.getPreferredGenders(), after.getPreferredGenders())) {
+      updateValue(set, unset, prefix, fields.preferredGenders, gender2ordinal(after.getPreferredGenders()));
+    }
+    updateModel(set, unset, prefix, fields.address, AddressExtAdapter.INSTANCE, before.getAddress(), after.getAddress());
+    updateModels(set, unset, prefix, fields.otherAddresses, AddressAdapter.INSTANCE, before.getOtherAddresses(), after.getOtherAddresses());
+  }
+
+  @Override
+  public void validate(Document doc, String prefix, List<String> violations) {
+    super.validate(doc, prefix, violations);
+    validateValue(violations, prefix, fields.id, doc.get(fields.id), ObjectId.class, () -> id2string((ObjectId) doc.get(fields.id)));
+    validateItems(violations, prefix, fields.friendIds, doc.get(fields.friendIds), ObjectId.class);
+    validateValue(violations, prefix, fields.name, doc.get(fields.name), String.class, () -> (String) doc.get(fields.name));
+    validateItems(violations, prefix, fields.nicknames, doc.get(fields.nicknames), String.class);
+    if (validatePresent(violations, prefix, fields.age, doc.get(fields.age))) validateValue(violations, prefix, fields.age, doc.get(fields.age), Integer.class, () -> (int) doc.get(fields.age));
+    validateValue(violations, prefix, fields.number, doc.get(fields.number), Integer.class, () -> String.valueOf(doc.get(fields.number)));
+    if (validatePresent(violations, prefix, fields.famous, doc.get(fields.famous))) validateValue(violations, prefix, fields.famous, doc.get(fields.famous), Boolean.class, () -> (boolean) doc.get(fields.famous));
+    validateValue(violations, prefix, fields.gender, doc.get(fields.gender), String.class, () -> code2gender(doc.get(fields.gender)));
+    validateItems(violations, prefix, fields.preferredGenders, doc.get(fields.preferredGenders), Integer.class, item -> ordinal2gender(item));
+    validateModel(violations, prefix, fields.address, doc.get(fields.address), AddressExtAdapter.INSTANCE);
+    validateModels(violations, prefix, fields.otherAddresses, doc.get(fields.otherAddresses), AddressAdapter.INSTANCE);
+  }
+
+  /**
+   * Only reads the fields of {@link #SUMMARY_PROJECTION}
+   */
+  public T doc2modelSummary(Document doc) {
+    if (doc == null) return null;
+    final T model = newModelInstance();
+    model.setName((String) doc.get(fields.name));
+    if (doc.get(fields.age) != null) {
+      model.setAge((int) doc.get(fields.age));
+    }
+    model.setGender(code2gender(doc.get(fields.gender)));
+    return model;
+  }
+
+  /**
+   * Returns a {@link Lazy} model, that converts each field from the document on the first call to its getter
+   */
+  public Person doc2modelLazy(Document doc) {
+    if (doc == null) return null;
+    return new Lazy(doc);
+  }
+
+  public List<Person> doc2modelLazy(List<Document> docs) {
+    return mapToList(docs, this::doc2modelLazy);
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return (Class<T>) Person.class;
+  }
+
+  @Override
+  public void encodeFields(BsonWriter writer, T model, EncoderContext ctx) {
+    super.encodeFields(writer, model, ctx);
+    encodeObjectId(writer, fields.id, model.getId());
+    encodeObjectIds(writer, fields.friendIds, model.getFriendIds());
+    encodeField(writer, fields.name, model.getName());
+    encodeList(writer, fields.nicknames, model.getNicknames(), ctx);
+    encodeField(writer, fields.age, model.getAge());
+    encodeField(writer, fields.number, Integer.parseInt(model.getNumber()));
+    encodeField(writer, fields.famous, model.isFamous());
+    encodeField(writer, fields.gender, gender2code(model.getGender()));
+    encodeEnums(writer, fields.preferredGenders, model.getPreferredGenders(), PersonAdapter::gender2ordinal);
+    encodeModel(writer, fields.address, AddressExtAdapter.INSTANCE, model.getAddress(), ctx);
+    encodeModels(writer, fields.otherAddresses, AddressAdapter.INSTANCE, model.getOtherAddresses(), ctx);
+  }
+
+  @Override
+  public boolean decodeField(BsonReader reader, String docField, T model, DecoderContext ctx) {
+    switch (docField) {
+      case "_id":
+        model.setId(readObjectId(reader));
+        return true;
+      case "friends":
+        model.setFriendIds(readObjectIds(reader));
+        return true;
+      case "name":
+        model.setName(reader.readString());
+        return true;
+      case "nicks":
+        model.setNicknames(readList(reader, ctx));
+        return true;
+      case "age":
+        model.setAge(reader.readInt32());
+        return true;
+      case "num":
+        model.setNumber(String.valueOf(reader.readInt32()));
+        return true;
+      case "fam":
+        model.setFamous(reader.readBoolean());
+        return true;
+      case "gen":
+        model.setGender(code2gender(reader.readString()));
+        return true;
+      case "prefs":
+        model.setPreferredGenders(readEnums(reader, PersonAdapter::ordinal2gender));
+        return true;
+      case "adr":
+        model.setAddress(readModel(reader, AddressExtAdapter.INSTANCE, ctx));
+        return true;
+      case "other":
+        model.setOtherAddresses(readModels(reader, AddressAdapter.INSTANCE, ctx));
+        return true;
+    }
+    return super.decodeField(reader, docField, model, ctx);
+  }
+
+  private static String gender2code(Person.Gender value) {
+    if (value == null) return null;
+    switch (value) {
+      case MALE: return "M";
+      case FEMALE: return "F";
+      default: throw new IllegalArgumentException("Unexpected value: " + value);
+    }
+  }
+
+  private static Integer gender2ordinal(Person.Gender value) {
+    if (value == null) return null;
+    return value.ordinal();
+  }
+
+  private static List<Object> gender2ordinal(List<Person.Gender> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    final List<Object> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(gender2ordinal(values.get(i)));
+    }
+    return result;
+  }
+
+  private static Person.Gender code2gender(Object value) {
+    if (value == null) return null;
+    switch ((String) value) {
+      case "M": return Person.Gender.MALE;
+      case "F": return Person.Gender.FEMALE;
+      default: throw new IllegalArgumentException("Unknown Gender code: " + value);
+    }
+  }
+
+  private static Person.Gender ordinal2gender(Object value) {
+    if (value == null) return null;
+    return GENDER_VALUES[(Integer) value];
+  }
+
+  private static List<Person.Gender> ordinal2gender(List<Object> values) {
+    if (values == null) return null;
+    final int size = values.size();
+    final List<Person.Gender> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(ordinal2gender(values.get(i)));
+    }
+    return result;
+  }
+
+  public static class Fields extends BaseCodecAdapter.Fields {
     public final String id = "_id";
 
     public final String friendIds = "friends";
@@ -80,4 +301,220 @@ public class PersonAdapter<T extends Person> extends BaseDocumentAdapter<T> {
 
     public final String otherAddresses = "other";
   }
+
+  /**
+   * {@link Person} that keeps the document and converts each field on the first call to its getter.
+   * Setters mark their field as converted, so the value in the document is ignored. It's not thread-safe.
+   */
+  public class Lazy extends Person {
+    private final Document doc;
+
+    private boolean idLoaded;
+
+    private boolean friendIdsLoaded;
+
+    private boolean nameLoaded;
+
+    private boolean nicknamesLoaded;
+
+    private boolean ageLoaded;
+
+    private boolean numberLoaded;
+
+    private boolean famousLoaded;
+
+    private boolean genderLoaded;
+
+    private boolean preferredGendersLoaded;
+
+    private boolean addressLoaded;
+
+    private boolean otherAddressesLoaded;
+
+    Lazy(Document doc) {
+      this.doc = doc;
+    }
+
+    @Override
+    public String getId() {
+      if (!idLoaded) {
+        super.setId(id2string((ObjectId) doc.get(fields.id)));
+        idLoaded = true;
+      }
+      return super.getId();
+    }
+
+    @Override
+    public void setId(String id) {
+      idLoaded = true;
+      super.setId(id);
+    }
+
+    @Override
+    public List<String> getFriendIds() {
+      if (!friendIdsLoaded) {
+        super.setFriendIds(id2string((List<ObjectId>) doc.get(fields.friendIds)));
+        friendIdsLoaded = true;
+      }
+      return super.getFriendIds();
+    }
+
+    @Override
+    public void setFriendIds(List<String> friendIds) {
+      friendIdsLoaded = true;
+      super.setFriendIds(friendIds);
+    }
+
+    @Override
+    public String getName() {
+      if (!nameLoaded) {
+        super.setName((String) doc.get(fields.name));
+        nameLoaded = true;
+      }
+      return super.getName();
+    }
+
+    @Override
+    public void setName(String name) {
+      nameLoaded = true;
+      super.setName(name);
+    }
+
+    @Override
+    public List<String> getNicknames() {
+      if (!nicknamesLoaded) {
+        super.setNicknames((List<String>) doc.get(fields.nicknames));
+        nicknamesLoaded = true;
+      }
+      return super.getNicknames();
+    }
+
+    @Override
+    public void setNicknames(List<String> nicknames) {
+      nicknamesLoaded = true;
+      super.setNicknames(nicknames);
+    }
+
+    @Override
+    public int getAge() {
+      if (!ageLoaded) {
+        super.setAge((int) doc.get(fields.age));
+        ageLoaded = true;
+      }
+      return super.getAge();
+    }
+
+    @Override
+    public void setAge(int age) {
+      ageLoaded = true;
+      super.setAge(age);
+    }
+
+    @Override
+    public String getNumber() {
+      if (!numberLoaded) {
+        super.setNumber(String.valueOf(doc.get(fields.number)));
+        numberLoaded = true;
+      }
+      return super.getNumber();
+    }
+
+    @Override
+    public void setNumber(String number) {
+      numberLoaded = true;
+      super.setNumber(number);
+    }
+
+    @Override
+    public boolean isFamous() {
+      if (!famousLoaded) {
+        super.setFamous((boolean) doc.get(fields.famous));
+        famousLoaded = true;
+      }
+      return super.isFamous();
+    }
+
+    @Override
+    public void setFamous(boolean famous) {
+      famousLoaded = true;
+      super.setFamous(famous);
+    }
+
+    @Override
+    public Person.Gender getGender() {
+      if (!genderLoaded) {
+        super.setGender(code2gender(doc.get(fields.gender)));
+        genderLoaded = true;
+      }
+      return super.getGender();
+    }
+
+    @Override
+    public void setGender(Person.Gender gender) {
+      genderLoaded = true;
+      super.setGender(gender);
+    }
+
+    @Override
+    public List<Person.Gender> getPreferredGenders() {
+      if (!preferredGendersLoaded) {
+        super.setPreferredGenders(ordinal2gender((List<Object>) doc.get(fields.preferredGenders)));
+        preferredGendersLoaded = true;
+      }
+      return super.getPreferredGenders();
+    }
+
+    @Override
+    public void setPreferredGenders(List<Person.Gender> preferredGenders) {
+      preferredGendersLoaded = true;
+      super.setPreferredGenders(preferredGenders);
+    }
+
+    @Override
+    public AddressExt getAddress() {
+      if (!addressLoaded) {
+        super.setAddress(AddressExtAdapter.INSTANCE.doc2model((Document) doc.get(fields.address)));
+        addressLoaded = true;
+      }
+      return super.getAddress();
+    }
+
+    @Override
+    public void setAddress(AddressExt address) {
+      addressLoaded = true;
+      super.setAddress(address);
+    }
+
+    @Override
+    public List<Address> getOtherAddresses() {
+      if (!otherAddressesLoaded) {
+        super.setOtherAddresses(AddressAdapter.INSTANCE.doc2modelLazy((List<Document>) doc.get(fields.otherAddresses)));
+        otherAddressesLoaded = true;
+      }
+      return super.getOtherAddresses();
+    }
+
+    @Override
+    public void setOtherAddresses(List<Address> otherAddresses) {
+      otherAddressesLoaded = true;
+      super.setOtherAddresses(otherAddresses);
+    }
+
+    /**
+     * Converts the fields that were not converted yet (e.g. before serializing the model by its fields)
+     */
+    public void loadAll() {
+      getId();
+      getFriendIds();
+      getName();
+      getNicknames();
+      getAge();
+      getNumber();
+      isFamous();
+      getGender();
+      getPreferredGenders();
+      getAddress();
+      getOtherAddresses();
+    }
+  }
 }
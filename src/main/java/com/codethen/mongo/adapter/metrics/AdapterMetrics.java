@@ -0,0 +1,23 @@
+package com.codethen.mongo.adapter.metrics;
+
+import com.codethen.mongo.adapter.generator.AdapterGenerator;
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+
+/**
+ * Receives the metrics of the conversions of the adapters generated with {@link AdapterGenerator#setGenerateMetrics}.
+ * Set it with {@link BaseDocumentAdapter#setMetrics}. Implementations must be thread-safe and fast,
+ * since they're called on every conversion. See {@link HistogramAdapterMetrics}.
+ */
+public interface AdapterMetrics {
+
+	/** Metrics that are not recorded (the default), so the adapters don't even measure the conversions */
+	AdapterMetrics NONE = (adapterClass, operation, nanos, fieldCount, estimatedBytes) -> {};
+
+	enum Operation { MODEL2DOC, DOC2MODEL }
+
+	/**
+	 * Records one conversion of a model (nested models are recorded by their own adapters too).
+	 * The field count is the number of fields of the document, and the size is estimated (see {@link com.codethen.util.BsonSize}).
+	 */
+	void record(Class<?> adapterClass, Operation operation, long nanos, int fieldCount, int estimatedBytes);
+}
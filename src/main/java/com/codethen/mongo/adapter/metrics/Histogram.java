@@ -0,0 +1,73 @@
+package com.codethen.mongo.adapter.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values (e.g. latencies in nanoseconds).
+ *
+ * Values are counted in buckets: 4 buckets for each power of two, so values are approximated with an error below 25%.
+ * Recording is just a few atomic increments, so it can be called from many threads.
+ */
+public class Histogram {
+
+	private static final int subBucketBits = 2;
+	private static final int subBuckets = 1 << subBucketBits;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64 * subBuckets);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	public void record(long value) {
+		if (value < 0) value = 0;
+		buckets.incrementAndGet(bucketOf(value));
+		count.increment();
+		sum.add(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public double getMean() {
+		final long count = getCount();
+		return count == 0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	 * Approximate value at the given percentile (between 0 and 100), i.e. the upper bound of the bucket
+	 * where the percentile falls. Returns 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		final long total = getCount();
+		if (total == 0) return 0;
+		final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long accumulated = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			accumulated += buckets.get(i);
+			if (accumulated >= rank) return upperBoundOf(i);
+		}
+		return upperBoundOf(buckets.length() - 1);
+	}
+
+	/** Values below subBuckets have a bucket each. Other values go to the sub-bucket of their highest bit. */
+	private static int bucketOf(long value) {
+		if (value < subBuckets) return (int) value;
+		final int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = highestBit - subBucketBits;
+		final int subBucket = (int) (value >>> shift) & (subBuckets - 1);
+		return (shift + 1) * subBuckets + subBucket;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < subBuckets) return bucket;
+		final int shift = bucket / subBuckets - 1;
+		final long subBucket = bucket % subBuckets;
+		final long upperBound = ((subBuckets + subBucket + 1) << shift) - 1;
+		return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+	}
+}
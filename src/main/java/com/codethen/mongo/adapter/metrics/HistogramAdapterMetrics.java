@@ -0,0 +1,74 @@
+package com.codethen.mongo.adapter.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Default {@link AdapterMetrics}, that keeps {@link Histogram}s of latency, field count and size,
+ * for each adapter and operation. Recording is lock-free (once the histograms of an adapter exist).
+ */
+public class HistogramAdapterMetrics implements AdapterMetrics {
+
+	/** Stats by adapter class, with one {@link Stats} per {@link Operation} (by ordinal) */
+	private final ConcurrentMap<Class<?>, Stats[]> stats = new ConcurrentHashMap<>();
+
+	@Override
+	public void record(Class<?> adapterClass, Operation operation, long nanos, int fieldCount, int estimatedBytes) {
+		Stats[] adapterStats = stats.get(adapterClass);
+		if (adapterStats == null) adapterStats = stats.computeIfAbsent(adapterClass, c -> newStats());
+		final Stats s = adapterStats[operation.ordinal()];
+		s.nanos.record(nanos);
+		s.fieldCount.record(fieldCount);
+		s.bytes.record(estimatedBytes);
+	}
+
+	/** Stats recorded for the given adapter and operation, or null if there are none */
+	public Stats getStats(Class<?> adapterClass, Operation operation) {
+		final Stats[] adapterStats = stats.get(adapterClass);
+		return adapterStats == null ? null : adapterStats[operation.ordinal()];
+	}
+
+	/** Summary with a line per adapter and operation */
+	public String report() {
+		final StringBuilder report = new StringBuilder();
+		for (Map.Entry<Class<?>, Stats[]> entry : stats.entrySet()) {
+			for (Operation operation : Operation.values()) {
+				final Stats s = entry.getValue()[operation.ordinal()];
+				if (s.nanos.getCount() == 0) continue;
+				report.append(String.format("%s %s: count=%d, p50=%dns, p99=%dns, max=%dns, fields=%.1f, bytes=%.1f%n",
+					entry.getKey().getSimpleName(), operation, s.nanos.getCount(),
+					s.nanos.getPercentile(50), s.nanos.getPercentile(99), s.nanos.getPercentile(100),
+					s.fieldCount.getMean(), s.bytes.getMean()));
+			}
+		}
+		return report.toString();
+	}
+
+	public static class Stats {
+
+		private final Histogram nanos = new Histogram();
+		private final Histogram fieldCount = new Histogram();
+		private final Histogram bytes = new Histogram();
+
+		/** Latency of the conversions, in nanoseconds (the count is the number of conversions) */
+		public Histogram getNanos() {
+			return nanos;
+		}
+
+		public Histogram getFieldCount() {
+			return fieldCount;
+		}
+
+		/** Estimated BSON size of the documents */
+		public Histogram getBytes() {
+			return bytes;
+		}
+	}
+
+	private static Stats[] newStats() {
+		final Stats[] result = new Stats[Operation.values().length];
+		for (int i = 0; i < result.length; i++) result[i] = new Stats();
+		return result;
+	}
+}
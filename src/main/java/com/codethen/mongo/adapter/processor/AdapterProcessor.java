@@ -0,0 +1,56 @@
+package com.codethen.mongo.adapter.processor;
+
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Generates adapters at compile time for the classes annotated with {@link MongoAdapter}.
+ *
+ * It's registered in META-INF/services, so it runs when this library is in the compile classpath
+ * (or in the annotation processor path). Each adapter only depends on its model, so it's an isolating processor.
+ */
+@SupportedAnnotationTypes({"com.codethen.mongo.adapter.processor.MongoAdapter", "com.codethen.mongo.adapter.processor.MongoField"})
+public class AdapterProcessor extends AbstractProcessor {
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(MongoAdapter.class)) {
+
+			if (element.getKind() != ElementKind.CLASS) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@MongoAdapter can only be used on classes", element);
+				continue;
+			}
+
+			final TypeElement modelElement = (TypeElement) element;
+
+			try {
+				final TypeSpec adapter = new ElementAdapterGenerator(processingEnv, modelElement).build();
+				final String packageName = ElementAdapterGenerator.adapterClassName(processingEnv, modelElement).packageName();
+				JavaFile.builder(packageName, adapter).build().writeTo(processingEnv.getFiler());
+			} catch (IllegalArgumentException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), modelElement);
+			} catch (IOException e) {
+				throw new RuntimeException("Problem writing adapter for " + modelElement, e);
+			}
+		}
+
+		return true;
+	}
+}
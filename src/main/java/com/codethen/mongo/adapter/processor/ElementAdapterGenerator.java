@@ -0,0 +1,207 @@
+package com.codethen.mongo.adapter.processor;
+
+import com.codethen.mongo.adapter.generator.AdapterGenerator;
+import com.codethen.mongo.adapter.generator.BaseAdapterGenerator;
+import com.codethen.mongo.adapter.generator.BaseCodecAdapter;
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import com.squareup.javapoet.*;
+import org.bson.Document;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import java.util.*;
+
+/**
+ * Generates the same adapter as {@link AdapterGenerator} does with its default options (and optionally the codec),
+ * but from the source elements of a {@link MongoAdapter} model, instead of using reflection over compiled classes.
+ * The code is generated by {@link BaseAdapterGenerator}, shared with {@link AdapterGenerator}.
+ */
+class ElementAdapterGenerator extends BaseAdapterGenerator<VariableElement, TypeMirror> {
+
+	private final ProcessingEnvironment env;
+	private final TypeElement modelElement;
+	private final boolean generateCodec;
+	private final ClassName adapterSuperclass;
+
+	/** Mapped fields of the model, with their {@link Document} field names */
+	private final Map<VariableElement, String> fieldNames = new LinkedHashMap<>();
+
+	ElementAdapterGenerator(ProcessingEnvironment env, TypeElement modelElement) {
+		this.env = env;
+		this.modelElement = modelElement;
+		this.generateCodec = modelElement.getAnnotation(MongoAdapter.class).codec();
+		this.adapterSuperclass = findAdapterSuperclass();
+
+		for (VariableElement field : ElementFilter.fieldsIn(modelElement.getEnclosedElements())) {
+			final MongoField mongoField = field.getAnnotation(MongoField.class);
+			if (mongoField != null) {
+				checkArray(field, mongoField);
+				fieldNames.put(field, mongoField.value().isEmpty() ? field.getSimpleName().toString() : mongoField.value());
+			}
+		}
+	}
+
+	/** Name of the adapter of the given model, e.g. com.brand.model.adapter.PersonAdapter */
+	static ClassName adapterClassName(ProcessingEnvironment env, TypeElement model) {
+		final String packageName = model.getAnnotation(MongoAdapter.class).packageName();
+		final String adapterPackage = packageName.isEmpty()
+			? env.getElementUtils().getPackageOf(model).getQualifiedName() + ".adapter"
+			: packageName;
+		return ClassName.get(adapterPackage, model.getSimpleName() + "Adapter");
+	}
+
+	TypeSpec build() {
+		return buildAdapter()
+			.addOriginatingElement(modelElement)
+			.build();
+	}
+
+	/** The adapter of the superclass if it's a {@link MongoAdapter} model, or the base adapter otherwise */
+	private ClassName findAdapterSuperclass() {
+		final TypeMirror superclass = modelElement.getSuperclass();
+		if (superclass.getKind() == TypeKind.DECLARED) {
+			final TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+			final MongoAdapter superAnnotation = superElement.getAnnotation(MongoAdapter.class);
+			if (superAnnotation != null) {
+				if (generateCodec && !superAnnotation.codec()) {
+					throw new IllegalArgumentException("The adapter of " + superElement + " must be generated as a codec too");
+				}
+				return adapterClassName(env, superElement);
+			}
+		}
+		return ClassName.get(generateCodec ? BaseCodecAdapter.class : BaseDocumentAdapter.class);
+	}
+
+
+	// --- The model, for BaseAdapterGenerator ---
+
+	@Override
+	protected ClassName getAdapterClassName() {
+		return adapterClassName(env, modelElement);
+	}
+
+	@Override
+	protected ClassName getAdapterSuperclassName() {
+		return adapterSuperclass;
+	}
+
+	@Override
+	protected TypeName getModelTypeName() {
+		return ClassName.get(modelElement);
+	}
+
+	@Override
+	protected List<VariableElement> getModelFields() {
+		return new ArrayList<>(fieldNames.keySet());
+	}
+
+	/** Only the adapters of {@link MongoAdapter} models have their own doc2model(doc, target), the base adapters throw */
+	@Override
+	protected boolean superclassRefills() {
+		return !adapterSuperclass.equals(ClassName.get(BaseDocumentAdapter.class))
+			&& !adapterSuperclass.equals(ClassName.get(BaseCodecAdapter.class));
+	}
+
+	@Override
+	public boolean isGenerateCodec() {
+		return generateCodec;
+	}
+
+	@Override
+	protected String name(VariableElement field) {
+		return field.getSimpleName().toString();
+	}
+
+	@Override
+	protected String storedName(VariableElement field) {
+		return fieldNames.get(field);
+	}
+
+	@Override
+	protected TypeMirror fieldType(VariableElement field) {
+		return field.asType();
+	}
+
+	@Override
+	protected boolean isObjectId(VariableElement field) {
+		final boolean result = fieldNames.get(field).equals("_id") || field.getAnnotation(MongoField.class).objectId();
+		if (result && !TypeName.get(itemType(field.asType())).equals(ClassName.get(String.class))) {
+			throw new IllegalArgumentException("Model field " + name(field) + " must be String to be converted to ObjectId");
+		}
+		return result;
+	}
+
+	@Override
+	protected boolean isPacked(VariableElement field) {
+		return field.getAnnotation(MongoField.class).packed();
+	}
+
+	@Override
+	protected TypeName typeName(TypeMirror type) {
+		return TypeName.get(type);
+	}
+
+	@Override
+	protected TypeName rawTypeName(TypeMirror type) {
+		if (type.getKind().isPrimitive() || type.getKind() == TypeKind.DECLARED || type.getKind() == TypeKind.ARRAY) {
+			return TypeName.get(env.getTypeUtils().erasure(type));
+		}
+		return ClassName.OBJECT;
+	}
+
+	@Override
+	protected boolean isList(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) return false;
+		final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		return element.getQualifiedName().contentEquals(List.class.getName()) && !((DeclaredType) type).getTypeArguments().isEmpty();
+	}
+
+	@Override
+	protected TypeMirror itemType(TypeMirror type) {
+		return isList(type) ? ((DeclaredType) type).getTypeArguments().get(0) : type;
+	}
+
+	@Override
+	protected boolean isEnum(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+	}
+
+	@Override
+	protected Object adapterInstance(TypeMirror type) {
+		final ClassName adapter = getModelAdapter(type);
+		return adapter == null ? null : CodeBlock.of("$T.$L", adapter, instanceVar);
+	}
+
+	@Override
+	protected Object codecAdapterInstance(TypeMirror type) {
+		final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		if (!element.getAnnotation(MongoAdapter.class).codec()) {
+			throw new IllegalArgumentException("Adapter for type " + element + " must be generated as a codec too");
+		}
+		return adapterInstance(type);
+	}
+
+
+	// --- Helpers ---
+
+	/** Only int[], long[] and double[] arrays are converted (other arrays have no codec in the documents), and only they can be packed */
+	private void checkArray(VariableElement field, MongoField mongoField) {
+		if (field.asType().getKind() == TypeKind.ARRAY && !isPrimitiveArray(field.asType())) {
+			throw new IllegalArgumentException("Model field " + name(field) + " must be int[], long[], double[] or a List, not " + field.asType());
+		}
+		if (mongoField.packed() && !isPrimitiveArray(field.asType())) {
+			throw new IllegalArgumentException("Model field " + name(field) + " must be int[], long[] or double[] to be packed");
+		}
+	}
+
+	/** The adapter of the given type if it's a {@link MongoAdapter} model, null otherwise */
+	private ClassName getModelAdapter(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) return null;
+		final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		return element.getAnnotation(MongoAdapter.class) == null ? null : adapterClassName(env, element);
+	}
+}
@@ -0,0 +1,24 @@
+package com.codethen.mongo.adapter.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class so {@link AdapterProcessor} generates its adapter during compilation.
+ * Only the fields annotated with {@link MongoField} are mapped.
+ *
+ * If the superclass of the model is annotated too, the adapter extends the adapter of the superclass
+ * (like AddressExtAdapter extends AddressAdapter).
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface MongoAdapter {
+
+	/** Package of the generated adapter. By default, the package of the model plus ".adapter". */
+	String packageName() default "";
+
+	/** Whether the adapter is also generated as a codec. See AdapterGenerator.setGenerateCodec. */
+	boolean codec() default false;
+}
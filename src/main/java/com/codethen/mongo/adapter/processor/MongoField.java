@@ -0,0 +1,29 @@
+package com.codethen.mongo.adapter.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps a field of a {@link MongoAdapter} model to a {@link org.bson.Document} field.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface MongoField {
+
+	/** Name of the field in the {@link org.bson.Document}. By default, the name of the model field. */
+	String value() default "";
+
+	/**
+	 * Whether the field (a String or a List of String) is stored as {@link org.bson.types.ObjectId}.
+	 * The "_id" field is always stored as ObjectId.
+	 */
+	boolean objectId() default false;
+
+	/**
+	 * Whether the field (an int[], long[] or double[]) is stored packed in a {@link org.bson.types.Binary},
+	 * instead of a BSON array of numbers. See AdapterGenerator.setPackedArrayFields.
+	 */
+	boolean packed() default false;
+}
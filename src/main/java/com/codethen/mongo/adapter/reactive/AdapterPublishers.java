@@ -0,0 +1,66 @@
+package com.codethen.mongo.adapter.reactive;
+
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reactive Streams operators that convert with the adapters, e.g. the {@link Publisher} of documents
+ * returned by the reactive driver into a {@link Publisher} of models.
+ *
+ * The operators keep the backpressure: the source is only requested what the subscriber requests.
+ * By default, conversions run in the thread that delivers the items (usually an I/O thread of the driver).
+ * Give an executor (e.g. {@link #newConversionExecutor}) to move them off that thread.
+ * They depend on the Reactive Streams interfaces only, so they can be used with any in-memory {@link Publisher}.
+ */
+public class AdapterPublishers {
+
+	private static final Executor sameThread = Runnable::run;
+
+	/** Converts the documents into models, in the thread that delivers them */
+	public static <M> Publisher<M> decode(Publisher<Document> docs, BaseDocumentAdapter<M> adapter) {
+		return decode(docs, adapter, sameThread);
+	}
+
+	/** Converts the documents into models, in the given executor */
+	public static <M> Publisher<M> decode(Publisher<Document> docs, BaseDocumentAdapter<M> adapter, Executor executor) {
+		return new MappingPublisher<>(docs, adapter::doc2model, executor);
+	}
+
+	/** Converts the models into documents, in the thread that delivers them */
+	public static <M> Publisher<Document> encode(Publisher<M> models, BaseDocumentAdapter<M> adapter) {
+		return encode(models, adapter, sameThread);
+	}
+
+	/** Converts the models into documents, in the given executor */
+	public static <M> Publisher<Document> encode(Publisher<M> models, BaseDocumentAdapter<M> adapter, Executor executor) {
+		return new MappingPublisher<>(models, adapter::model2doc, executor);
+	}
+
+	/**
+	 * Executor with a fixed number of daemon threads and a bounded queue, for the conversions.
+	 * Each subscription has at most one conversion task queued or running,
+	 * so maxQueuedTasks is the number of subscriptions that can wait for a thread.
+	 * If the queue is full, the subscription fails with a {@link java.util.concurrent.RejectedExecutionException}.
+	 */
+	public static ExecutorService newConversionExecutor(int threads, int maxQueuedTasks) {
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = runnable -> {
+			final Thread thread = new Thread(runnable, "adapter-conversion-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(maxQueuedTasks), threadFactory);
+	}
+}
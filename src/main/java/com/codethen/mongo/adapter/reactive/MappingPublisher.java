@@ -0,0 +1,163 @@
+package com.codethen.mongo.adapter.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Publisher that converts each item of the source with a function, keeping the backpressure of the subscriber:
+ * the source is requested exactly what the subscriber requests.
+ *
+ * Items are converted in the given executor. All the items received and requested are converted in the same task,
+ * so there's one task per batch of items, not per item. There's at most one task per subscription at any time.
+ */
+class MappingPublisher<S, T> implements Publisher<T> {
+
+	private final Publisher<S> source;
+	private final Function<? super S, ? extends T> mapper;
+	private final Executor executor;
+
+	MappingPublisher(Publisher<S> source, Function<? super S, ? extends T> mapper, Executor executor) {
+		this.source = source;
+		this.mapper = mapper;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber == null) throw new NullPointerException("Subscriber is null");
+		source.subscribe(new MappingSubscription<>(subscriber, mapper, executor));
+	}
+
+	/** Subscribed to the source and given to the subscriber. Only the drain task signals the subscriber. */
+	private static class MappingSubscription<S, T> implements Subscriber<S>, Subscription {
+
+		private final Subscriber<? super T> downstream;
+		private final Function<? super S, ? extends T> mapper;
+		private final Executor executor;
+
+		private final Queue<S> received = new ConcurrentLinkedQueue<>();
+		private final AtomicLong requested = new AtomicLong();
+		/** Number of times the drain was scheduled, while the drain task is pending or running */
+		private final AtomicInteger pendingDrains = new AtomicInteger();
+
+		private volatile Subscription upstream;
+		private volatile boolean done;
+		private volatile Throwable error;
+		private volatile boolean cancelled;
+
+		MappingSubscription(Subscriber<? super T> downstream, Function<? super S, ? extends T> mapper, Executor executor) {
+			this.downstream = downstream;
+			this.mapper = mapper;
+			this.executor = executor;
+		}
+
+		// --- Subscriber (signals from the source) ---
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			if (upstream != null) {
+				subscription.cancel();
+				return;
+			}
+			upstream = subscription;
+			downstream.onSubscribe(this);
+		}
+
+		@Override
+		public void onNext(S item) {
+			received.offer(item);
+			drain();
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			error = e;
+			done = true;
+			drain();
+		}
+
+		@Override
+		public void onComplete() {
+			done = true;
+			drain();
+		}
+
+		// --- Subscription (signals from the subscriber) ---
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				upstream.cancel();
+				received.clear();
+				onError(new IllegalArgumentException("Requested items must be positive (rule 3.9), but was " + n));
+				return;
+			}
+			requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+			upstream.request(n);
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				upstream.cancel();
+				received.clear();
+			}
+		}
+
+		// --- Conversion ---
+
+		private void drain() {
+			if (pendingDrains.getAndIncrement() != 0) return; // The running task will drain again
+			try {
+				executor.execute(this::drainLoop);
+			} catch (RuntimeException e) { // e.g. RejectedExecutionException
+				cancel();
+				downstream.onError(e);
+			}
+		}
+
+		private void drainLoop() {
+			int drains = pendingDrains.get();
+			do {
+				long emitted = 0;
+				final long demand = requested.get();
+
+				while (emitted < demand && !cancelled) {
+					final S item = received.poll();
+					if (item == null) break;
+					final T converted;
+					try {
+						converted = mapper.apply(item);
+					} catch (RuntimeException e) {
+						// Signals the error right away, and keeps looping so the drain counter is reset
+						cancel();
+						downstream.onError(e);
+						break;
+					}
+					downstream.onNext(converted);
+					emitted++;
+				}
+
+				if (emitted != 0 && demand != Long.MAX_VALUE) {
+					requested.addAndGet(-emitted);
+				}
+
+				if (!cancelled && done && received.isEmpty()) {
+					cancelled = true;
+					if (error != null) downstream.onError(error); else downstream.onComplete();
+				}
+
+				drains = pendingDrains.addAndGet(-drains);
+			} while (drains != 0);
+		}
+	}
+}
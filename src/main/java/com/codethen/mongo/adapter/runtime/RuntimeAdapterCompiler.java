@@ -0,0 +1,231 @@
+package com.codethen.mongo.adapter.runtime;
+
+import com.codethen.mongo.adapter.generator.AdapterGeneratorContext;
+import com.codethen.mongo.adapter.generator.BaseDocumentAdapter;
+import com.google.common.hash.Hashing;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeSpec;
+import org.bson.Document;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compiles adapters in memory and loads them, for models that are only known at runtime (e.g. loaded from plugins).
+ * No source or class files are written.
+ *
+ * Register the generators in a context and call {@link #compileAll}. The adapters of each call are compiled together
+ * and loaded into their own class loader, so nested adapters must be registered in the same context.
+ * Compiled adapters are cached by context, and by their generated source and model classes (models with the same name
+ * loaded by different class loaders get their own adapters), so the same configuration is only compiled once.
+ * The cache doesn't keep the class loaders of the models, so plugins can be unloaded.
+ *
+ * It needs the system Java compiler (a JDK, not a JRE). The classpath of the compiler includes the one of the JVM,
+ * the locations of the model classes and the ones of this library and the driver.
+ * The adapters are loaded with the class loaders of all the models, besides the one of this library.
+ */
+public class RuntimeAdapterCompiler {
+
+	private final JavaCompiler compiler;
+
+	/**
+	 * Adapters by model class, by model classes and hash of the generated sources, kept in the first model class.
+	 * The compiled adapters reference the class loaders of the models, so a map with models or loaders as keys would keep them forever.
+	 * A class value doesn't, so the adapters of a plugin are unloaded with it.
+	 */
+	private final ClassValue<Map<List<Object>, Map<Class<?>, BaseDocumentAdapter<?>>>> cache = new ClassValue<Map<List<Object>, Map<Class<?>, BaseDocumentAdapter<?>>>>() {
+		@Override
+		protected Map<List<Object>, Map<Class<?>, BaseDocumentAdapter<?>>> computeValue(Class<?> modelClass) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/** Adapters by model class, by context already compiled (so they are not built again) */
+	private final Map<AdapterGeneratorContext, Map<Class<?>, BaseDocumentAdapter<?>>> contexts = Collections.synchronizedMap(new WeakHashMap<>());
+
+	public RuntimeAdapterCompiler() {
+		compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) throw new IllegalStateException("No Java compiler available, adapters can only be compiled at runtime with a JDK");
+	}
+
+	/**
+	 * Builds the adapters registered in the context (see {@link AdapterGeneratorContext#buildAll}), compiles and loads them.
+	 * Returns the instance of each adapter (its INSTANCE field), by model class.
+	 * A context is only built the first time, so generators registered later are ignored (use a new context for them).
+	 */
+	public Map<Class<?>, BaseDocumentAdapter<?>> compileAll(AdapterGeneratorContext context) {
+		return contexts.computeIfAbsent(context, this::buildAndCompile);
+	}
+
+	private Map<Class<?>, BaseDocumentAdapter<?>> buildAndCompile(AdapterGeneratorContext context) {
+
+		final List<JavaFile> files = context.buildAll();
+
+		final Map<Class<?>, String> adapterNames = new LinkedHashMap<>();
+		for (Map.Entry<Class<?>, TypeSpec> adapter : context.getAdapters().entrySet()) {
+			if (files.stream().anyMatch(f -> f.typeSpec == adapter.getValue())) {
+				adapterNames.put(adapter.getKey(), context.getPackageName() + "." + adapter.getValue().name);
+			}
+		}
+
+		if (adapterNames.isEmpty()) return Collections.emptyMap();
+
+		final String sources = files.stream().map(JavaFile::toString).sorted().collect(joining());
+		final List<Object> key = new ArrayList<>(adapterNames.keySet()); // Classes are compared by identity (and loader)
+		key.add(Hashing.sha256().hashString(sources, StandardCharsets.UTF_8).toString());
+
+		return cache.get(adapterNames.keySet().iterator().next())
+			.computeIfAbsent(key, k -> load(compile(files, adapterNames.keySet()), adapterNames));
+	}
+
+	/** Compiles the adapters registered in the context (see {@link #compileAll}) and returns the one of the given model */
+	@SuppressWarnings("unchecked")
+	public <M> BaseDocumentAdapter<M> compile(AdapterGeneratorContext context, Class<M> modelClass) {
+		final BaseDocumentAdapter<?> adapter = compileAll(context).get(modelClass);
+		if (adapter == null) throw new IllegalArgumentException("No adapter registered for " + modelClass);
+		return (BaseDocumentAdapter<M>) adapter;
+	}
+
+	/** Returns the compiled classes, by binary name */
+	private Map<String, byte[]> compile(List<JavaFile> files, Collection<Class<?>> modelClasses) {
+
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		final MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8));
+		final List<JavaFileObject> sources = files.stream().map(JavaFile::toJavaFileObject).collect(toList());
+		final List<String> options = Arrays.asList("-classpath", getClasspath(modelClasses), "-proc:none");
+
+		final boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, sources).call();
+		if (!success) {
+			throw new RuntimeException("Problem compiling the adapters: " + diagnostics.getDiagnostics().stream()
+				.filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+				.map(d -> d.getMessage(Locale.ROOT))
+				.collect(joining("; ")));
+		}
+		return fileManager.classes;
+	}
+
+	private Map<Class<?>, BaseDocumentAdapter<?>> load(Map<String, byte[]> classes, Map<Class<?>, String> adapterNames) {
+
+		final Map<String, Class<?>> models = new HashMap<>();
+		final Set<ClassLoader> loaders = new LinkedHashSet<>();
+		loaders.add(RuntimeAdapterCompiler.class.getClassLoader());
+		for (Class<?> modelClass : adapterNames.keySet()) {
+			models.put(modelClass.getName(), modelClass);
+			if (modelClass.getClassLoader() != null) loaders.add(modelClass.getClassLoader());
+		}
+		final MemoryClassLoader classLoader = new MemoryClassLoader(models, new ArrayList<>(loaders), classes);
+
+		final Map<Class<?>, BaseDocumentAdapter<?>> result = new LinkedHashMap<>();
+		for (Map.Entry<Class<?>, String> adapterName : adapterNames.entrySet()) {
+			try {
+				final Class<?> adapterClass = classLoader.loadClass(adapterName.getValue());
+				result.put(adapterName.getKey(), (BaseDocumentAdapter<?>) adapterClass.getField("INSTANCE").get(null));
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException("Problem loading the adapter " + adapterName.getValue(), e);
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Classpath of the JVM, plus the locations of the model classes (they may be loaded from other places, e.g. plugins)
+	 * and the ones of the base adapters and the driver (the JVM may have been started without them in its classpath, e.g. in a container)
+	 */
+	private String getClasspath(Collection<Class<?>> modelClasses) {
+		final Set<String> classpath = new LinkedHashSet<>(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+		final List<Class<?>> classes = new ArrayList<>(modelClasses);
+		classes.add(BaseDocumentAdapter.class);
+		classes.add(Document.class);
+		for (Class<?> clazz : classes) {
+			if (clazz.getProtectionDomain().getCodeSource() == null) continue;
+			try {
+				classpath.add(new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+			} catch (Exception e) {
+				// Not a file location, the class must be in the classpath of the JVM
+			}
+		}
+		return String.join(File.pathSeparator, classpath);
+	}
+
+
+	/** Keeps the compiled classes in memory */
+	private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+		private final Map<String, byte[]> classes = new HashMap<>();
+
+		MemoryFileManager(StandardJavaFileManager fileManager) {
+			super(fileManager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+			return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+				@Override
+				public OutputStream openOutputStream() {
+					return new ByteArrayOutputStream() {
+						@Override
+						public void close() {
+							classes.put(className, toByteArray());
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/**
+	 * Defines the compiled classes, and uses the given model classes (so the adapters get the same ones, whatever their loader).
+	 * The rest are loaded with the class loader of this library (so the adapters extend its base adapters), or else with the ones of the models.
+	 */
+	private static class MemoryClassLoader extends ClassLoader {
+
+		private final Map<String, Class<?>> models;
+		private final List<ClassLoader> loaders;
+		private final Map<String, byte[]> classes;
+
+		MemoryClassLoader(Map<String, Class<?>> models, List<ClassLoader> loaders, Map<String, byte[]> classes) {
+			super(null); // Only the bootstrap classes are loaded before trying the loaders
+			this.models = models;
+			this.loaders = loaders;
+			this.classes = classes;
+		}
+
+		/** The compiled classes are loaded first, since the loaders may have adapters with the same name */
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!classes.containsKey(name)) return super.loadClass(name, resolve);
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> loaded = findLoadedClass(name);
+				if (loaded == null) loaded = defineClass(name, classes.get(name));
+				if (resolve) resolveClass(loaded);
+				return loaded;
+			}
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			if (models.containsKey(name)) return models.get(name);
+			for (ClassLoader loader : loaders) {
+				try {
+					return loader.loadClass(name);
+				} catch (ClassNotFoundException e) {
+					// Try the next one
+				}
+			}
+			throw new ClassNotFoundException(name);
+		}
+
+		private Class<?> defineClass(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
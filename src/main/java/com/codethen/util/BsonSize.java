@@ -0,0 +1,62 @@
+package com.codethen.util;
+
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the size in bytes that a {@link Document} will have once encoded as BSON, without encoding it.
+ * Strings are assumed to be ASCII and unknown types are given an approximate size, so the result is an estimation.
+ */
+public class BsonSize {
+
+	/** Size assumed for values of types not known here */
+	private static final int unknownValueSize = 16;
+
+	public static int estimate(Map<String, ?> doc) {
+		int size = 4 + 1; // length + terminator
+		for (Map.Entry<String, ?> entry : doc.entrySet()) {
+			size += 1 + entry.getKey().length() + 1 + estimateValue(entry.getValue()); // type + key (cstring) + value
+		}
+		return size;
+	}
+
+	public static int estimate(List<?> list) {
+		int size = 4 + 1;
+		for (int i = 0; i < list.size(); i++) {
+			size += 1 + stringSize(i) + 1 + estimateValue(list.get(i));
+		}
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static int estimateValue(Object value) {
+		if (value == null || value instanceof Boolean) return value == null ? 0 : 1;
+		if (value instanceof String) return 4 + ((String) value).length() + 1;
+		if (value instanceof Integer) return 4;
+		if (value instanceof Long || value instanceof Double || value instanceof Date) return 8;
+		if (value instanceof ObjectId) return 12;
+		if (value instanceof Decimal128) return 16;
+		if (value instanceof Map) return estimate((Map<String, ?>) value);
+		if (value instanceof List) return estimate((List<?>) value);
+		if (value instanceof Binary) return 4 + 1 + ((Binary) value).length();
+		if (value instanceof BsonValue && ((BsonValue) value).isDocument()) return estimate(((BsonValue) value).asDocument());
+		return unknownValueSize;
+	}
+
+	/** Number of chars of a non-negative int, e.g. of an array index used as key */
+	private static int stringSize(int i) {
+		int digits = 1;
+		while (i >= 10) {
+			i /= 10;
+			digits++;
+		}
+		return digits;
+	}
+}
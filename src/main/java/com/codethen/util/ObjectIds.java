@@ -0,0 +1,100 @@
+package com.codethen.util;
+
+import org.bson.types.ObjectId;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts {@link ObjectId} to and from its hex string with lookup tables.
+ * {@link ObjectId#ObjectId(String)} validates the string and then parses each byte from a substring,
+ * while here each char is looked up once. Lists are converted into pre-sized lists.
+ */
+public class ObjectIds {
+
+	private static final int idBytes = 12;
+	private static final int hexLength = idBytes * 2;
+
+	private static final char[] hexChars = "0123456789abcdef".toCharArray();
+
+	/** Value of each ASCII hex char (lower or upper case), or -1 */
+	private static final byte[] hexValues = new byte[128];
+	static {
+		Arrays.fill(hexValues, (byte) -1);
+		for (int i = 0; i < 16; i++) {
+			hexValues[hexChars[i]] = (byte) i;
+			hexValues[Character.toUpperCase(hexChars[i])] = (byte) i;
+		}
+	}
+
+	/** Buffer where the bytes of an id are put to convert it to hex, reused by each thread */
+	private static final ThreadLocal<ByteBuffer> idBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(idBytes));
+
+	/** Whether the string is a valid hex representation of an {@link ObjectId} */
+	public static boolean isValid(String hex) {
+		if (hex == null || hex.length() != hexLength) return false;
+		for (int i = 0; i < hexLength; i++) {
+			if (hexValue(hex.charAt(i)) < 0) return false;
+		}
+		return true;
+	}
+
+	/** Same as {@link ObjectId#ObjectId(String)}, but null for null. Throws {@link IllegalArgumentException} if the string is not valid. */
+	public static ObjectId parse(String hex) {
+		if (hex == null) return null;
+		if (hex.length() != hexLength) throw invalid(hex);
+		final byte[] bytes = new byte[idBytes];
+		for (int i = 0; i < idBytes; i++) {
+			final int high = hexValue(hex.charAt(i * 2));
+			final int low = hexValue(hex.charAt(i * 2 + 1));
+			if ((high | low) < 0) throw invalid(hex);
+			bytes[i] = (byte) (high << 4 | low);
+		}
+		return new ObjectId(bytes);
+	}
+
+	/** Same as {@link ObjectId#toHexString()}, but null for null */
+	public static String toHex(ObjectId id) {
+		return id == null ? null : toHex(id, idBuffers.get());
+	}
+
+	/** Parses the ids into a pre-sized list, that can be modified. Null items stay null. */
+	public static List<ObjectId> parse(List<String> hexes) {
+		if (hexes == null) return null;
+		final List<ObjectId> result = new ArrayList<>(hexes.size());
+		for (String hex : hexes) result.add(parse(hex));
+		return result;
+	}
+
+	/** Converts the ids into a pre-sized list, that can be modified. Null items stay null. */
+	public static List<String> toHex(List<ObjectId> ids) {
+		if (ids == null) return null;
+		final ByteBuffer buffer = idBuffers.get();
+		final List<String> result = new ArrayList<>(ids.size());
+		for (ObjectId id : ids) result.add(id == null ? null : toHex(id, buffer));
+		return result;
+	}
+
+	private static String toHex(ObjectId id, ByteBuffer buffer) {
+		((Buffer) buffer).clear();
+		id.putToByteBuffer(buffer);
+		final byte[] bytes = buffer.array();
+		final char[] chars = new char[hexLength];
+		for (int i = 0; i < idBytes; i++) {
+			chars[i * 2] = hexChars[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = hexChars[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+	private static int hexValue(char c) {
+		return c < hexValues.length ? hexValues[c] : -1;
+	}
+
+	private static IllegalArgumentException invalid(String hex) {
+		return new IllegalArgumentException("invalid hexadecimal representation of an ObjectId: [" + hex + "]");
+	}
+}
@@ -0,0 +1,205 @@
+package com.codethen.mongo.adapter.bulk;
+
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.adapter.AddressAdapter;
+import com.codethen.util.BsonSize;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link AdapterBulkWriter} with in-memory {@link BulkWriteTarget}s, without a server.
+ */
+public class AdapterBulkWriterTest {
+
+	@Test
+	public void writesAllTheModelsInBatchesByCount() {
+		final List<List<WriteModel<Document>>> batches = new CopyOnWriteArrayList<>();
+		final AdapterBulkWriter<Address> writer = new AdapterBulkWriter<>(AddressAdapter.INSTANCE, batches::add);
+		writer.setMaxBatchCount(1000);
+
+		assertEquals(2500, writer.write(addresses(2500).iterator()));
+
+		assertEquals(Arrays.asList(500, 1000, 1000), batchSizes(batches));
+		assertEquals(streets(2500), batches.stream()
+			.flatMap(List::stream)
+			.map(request -> ((InsertOneModel<Document>) request).getDocument().getString("str"))
+			.sorted()
+			.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void splitsBatchesByEstimatedSize() {
+		final List<Address> addresses = addresses(10);
+		final int docBytes = BsonSize.estimate(AddressAdapter.INSTANCE.model2doc(addresses.get(0)));
+		final List<List<WriteModel<Document>>> batches = new CopyOnWriteArrayList<>();
+		final AdapterBulkWriter<Address> writer = new AdapterBulkWriter<>(AddressAdapter.INSTANCE, batches::add);
+		writer.setMaxBatchBytes(docBytes * 3);
+
+		assertEquals(10, writer.write(addresses.iterator()));
+
+		assertEquals(Arrays.asList(1, 3, 3, 3), batchSizes(batches));
+	}
+
+	@Test
+	public void writesDocumentsBiggerThanTheBatchSize() {
+		final List<List<WriteModel<Document>>> batches = new CopyOnWriteArrayList<>();
+		final AdapterBulkWriter<Address> writer = new AdapterBulkWriter<>(AddressAdapter.INSTANCE, batches::add);
+		writer.setMaxBatchBytes(1);
+
+		assertEquals(3, writer.write(addresses(3).iterator()));
+
+		assertEquals(Arrays.asList(1, 1, 1), batchSizes(batches));
+	}
+
+	@Test
+	public void readsOnlyTheChunksInFlight() throws Exception {
+		final CountDownLatch writing = new CountDownLatch(2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountingIterator models = new CountingIterator(addresses(100));
+		final AdapterBulkWriter<Address> writer = new AdapterBulkWriter<>(AddressAdapter.INSTANCE, batch -> {
+			writing.countDown();
+			await(release);
+		});
+		writer.setMaxBatchCount(10);
+		writer.setConversionThreads(1);
+		writer.setMaxInFlightChunks(2);
+		writer.setWriteConcurrency(4);
+
+		final CompletableFuture<Long> written = CompletableFuture.supplyAsync(() -> writer.write(models));
+
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		Thread.sleep(100); // Time to read more models, if the writer didn't wait for a permit
+		assertEquals(20, models.read.get());
+
+		release.countDown();
+		assertEquals(100L, (long) written.get(10, TimeUnit.SECONDS));
+		assertEquals(100, models.read.get());
+	}
+
+	@Test
+	public void throwsTheFirstFailureOfTheTarget() {
+		final IllegalStateException failure = new IllegalStateException("Write failed");
+		final AdapterBulkWriter<Address> writer = new AdapterBulkWriter<>(AddressAdapter.INSTANCE, batch -> {
+			throw failure;
+		});
+
+		try {
+			writer.write(addresses(10).iterator());
+			fail("The failure of the target should be thrown");
+		} catch (RuntimeException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void waitsForTheBatchesInFlightIfReadingFails() {
+		final List<Address> addresses = addresses(15);
+		final IllegalStateException failure = new IllegalStateException("Read failed");
+		final Iterator<Address> models = new Iterator<Address>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public Address next() {
+				if (index == addresses.size()) throw failure;
+				return addresses.get(index++);
+			}
+		};
+		final List<Integer> written = new CopyOnWriteArrayList<>();
+		final AdapterBulkWriter<Address> writer = new AdapterBulkWriter<>(AddressAdapter.INSTANCE, batch -> {
+			sleep(200);
+			written.add(batch.size());
+		});
+		writer.setMaxBatchCount(10);
+
+		try {
+			writer.write(models);
+			fail("The failure of the models should be thrown");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+		assertEquals(Collections.singletonList(10), written); // The first chunk was written before throwing
+	}
+
+
+	private static List<Address> addresses(int count) {
+		return IntStream.range(0, count).mapToObj(i -> {
+			final Address address = new Address();
+			address.setStreet(street(i));
+			address.setNumber(i);
+			return address;
+		}).collect(Collectors.toList());
+	}
+
+	private static List<String> streets(int count) {
+		return IntStream.range(0, count).mapToObj(AdapterBulkWriterTest::street).sorted().collect(Collectors.toList());
+	}
+
+	/** Streets of the same length, so the documents have the same size */
+	private static String street(int i) {
+		return String.format("Street %05d", i);
+	}
+
+	private static List<Integer> batchSizes(List<List<WriteModel<Document>>> batches) {
+		return batches.stream().map(List::size).sorted().collect(Collectors.toList());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/** Counts the models read */
+	private static class CountingIterator implements Iterator<Address> {
+
+		private final Iterator<Address> models;
+		final AtomicInteger read = new AtomicInteger();
+
+		CountingIterator(List<Address> models) {
+			this.models = new ArrayList<>(models).iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return models.hasNext();
+		}
+
+		@Override
+		public Address next() {
+			read.incrementAndGet();
+			return models.next();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.codethen.mongo.adapter.cursor;
+
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.adapter.AddressAdapter;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PrefetchingCursor} with in-memory cursors, without a server.
+ */
+public class PrefetchingCursorTest {
+
+	@Test
+	public void returnsTheModelsInCursorOrder() {
+		final List<Document> docs = docs(1050);
+		final PrefetchingCursor<Address> cursor = new PrefetchingCursor<>(docs.iterator(), AddressAdapter.INSTANCE);
+		cursor.setBatchSize(100);
+
+		final List<Integer> numbers = new ArrayList<>();
+		cursor.forEachRemaining(address -> numbers.add(address.getNumber()));
+
+		assertEquals(IntStream.range(0, 1050).boxed().collect(Collectors.toList()), numbers);
+	}
+
+	@Test
+	public void closeWakesUpTheConsumer() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch never = new CountDownLatch(1);
+		final Iterator<Document> docs = docs(10).iterator();
+
+		// A cursor that waits for more documents (like a slow network), and ignores interruptions
+		final Iterator<Document> slowDocs = new Iterator<Document>() {
+			@Override
+			public boolean hasNext() {
+				if (docs.hasNext()) return true;
+				blocked.countDown();
+				while (true) {
+					try {
+						never.await();
+					} catch (InterruptedException e) {
+						// Ignored, like a blocking socket read
+					}
+				}
+			}
+
+			@Override
+			public Document next() {
+				return docs.next();
+			}
+		};
+
+		final PrefetchingCursor<Address> cursor = new PrefetchingCursor<>(slowDocs, AddressAdapter.INSTANCE);
+		cursor.setBatchSize(100);
+
+		final CompletableFuture<Boolean> hasNext = CompletableFuture.supplyAsync(cursor::hasNext);
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+		Thread.sleep(50); // Time for the consumer to wait for the batch
+		cursor.close();
+
+		assertFalse(hasNext.get(10, TimeUnit.SECONDS));
+	}
+
+
+	private static List<Document> docs(int count) {
+		return IntStream.range(0, count).mapToObj(i -> {
+			final Address address = new Address();
+			address.setStreet("Street " + i);
+			address.setNumber(i);
+			return AddressAdapter.INSTANCE.model2doc(address);
+		}).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,106 @@
+package com.codethen.mongo.adapter.dump;
+
+import com.codethen.mongo.adapter.generator.sample.Address;
+import com.codethen.mongo.adapter.generator.sample.adapter.AddressAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link AdapterDump} with temporary files.
+ */
+public class AdapterDumpTest {
+
+	private Path file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = Files.createTempFile("dump", ".bson");
+	}
+
+	@After
+	public void deleteFile() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void readsTheModelsWritten() throws Exception {
+		final AdapterDump<Address> dump = new AdapterDump<>(AddressAdapter.INSTANCE);
+		dump.setWriteRegionBytes(1000); // Some whole regions, and a last partial one
+		dump.setSegments(3);
+
+		assertEquals(500, dump.write(file, addresses(500).stream()));
+
+		assertEquals(numbers(500), dump.read(file).stream().map(Address::getNumber).collect(Collectors.toList()));
+		assertEquals(bytes(addresses(500)), Files.size(file));
+	}
+
+	@Test
+	public void replacesABiggerFile() throws Exception {
+		final AdapterDump<Address> dump = new AdapterDump<>(AddressAdapter.INSTANCE);
+		dump.write(file, addresses(500).stream());
+
+		dump.write(file, addresses(10).stream());
+
+		assertEquals(numbers(10), dump.read(file).stream().map(Address::getNumber).collect(Collectors.toList()));
+		assertEquals(bytes(addresses(10)), Files.size(file));
+	}
+
+	@Test
+	public void keepsTheModelsBeforeAFailure() throws Exception {
+		final IllegalStateException failure = new IllegalStateException("No more models");
+		final AdapterDump<Address> dump = new AdapterDump<>(AddressAdapter.INSTANCE);
+		dump.setWriteRegionBytes(1000);
+
+		try {
+			dump.write(file, Stream.concat(addresses(100).stream(), Stream.generate(() -> {
+				throw failure;
+			})));
+			fail("The failure of the models should be thrown");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+
+		assertEquals(numbers(100), dump.read(file).stream().map(Address::getNumber).collect(Collectors.toList()));
+		assertEquals(bytes(addresses(100)), Files.size(file));
+	}
+
+
+	private static List<Address> addresses(int count) {
+		return IntStream.range(0, count).mapToObj(i -> {
+			final Address address = new Address();
+			address.setStreet("Street " + i);
+			address.setNumber(i);
+			return address;
+		}).collect(Collectors.toList());
+	}
+
+	private static List<Integer> numbers(int count) {
+		return IntStream.range(0, count).boxed().collect(Collectors.toList());
+	}
+
+	/** Size of the dump of the models, written one at a time */
+	private long bytes(List<Address> addresses) throws Exception {
+		final Path single = Files.createTempFile("dump", ".bson");
+		try {
+			final AdapterDump<Address> dump = new AdapterDump<>(AddressAdapter.INSTANCE);
+			long result = 0;
+			for (Address address : addresses) {
+				dump.write(single, Stream.of(address));
+				result += Files.size(single);
+			}
+			return result;
+		} finally {
+			Files.deleteIfExists(single);
+		}
+	}
+}
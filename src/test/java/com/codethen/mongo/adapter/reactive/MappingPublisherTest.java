@@ -0,0 +1,325 @@
+package com.codethen.mongo.adapter.reactive;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link MappingPublisher} with in-memory publishers and subscribers, without a server.
+ */
+public class MappingPublisherTest {
+
+	private static final Executor sameThread = Runnable::run;
+
+	private static final Function<Integer, String> toText = i -> "item" + i;
+
+	@Test
+	public void convertsAllTheItems() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3), null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE, 0);
+
+		new MappingPublisher<>(source, toText, sameThread).subscribe(subscriber);
+
+		assertEquals(Arrays.asList("item1", "item2", "item3"), subscriber.items);
+		assertTrue(subscriber.completed);
+		assertNull(subscriber.error);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void requestsFromTheSourceWhatTheSubscriberRequests() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3, 4, 5), null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(2, 0);
+
+		new MappingPublisher<>(source, toText, sameThread).subscribe(subscriber);
+
+		assertEquals(Collections.singletonList(2L), source.requests);
+		assertEquals(Arrays.asList("item1", "item2"), subscriber.items);
+		assertFalse(subscriber.completed);
+
+		subscriber.subscription.request(3);
+
+		assertEquals(Arrays.asList(2L, 3L), source.requests);
+		assertEquals(5, subscriber.items.size());
+		assertTrue(subscriber.completed);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void convertsQueuedItemsInOneTask() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3), null);
+		final ManualExecutor executor = new ManualExecutor();
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE, 0);
+
+		new MappingPublisher<>(source, toText, executor).subscribe(subscriber);
+
+		assertEquals(1, executor.tasks.size());
+		assertTrue(subscriber.items.isEmpty());
+
+		executor.runAll();
+
+		assertEquals(3, subscriber.items.size());
+		assertTrue(subscriber.completed);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void allowsRequestsFromOnNext() {
+		final List<Integer> items = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+		final ListPublisher<Integer> source = new ListPublisher<>(items, null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(1, 1);
+
+		new MappingPublisher<>(source, toText, sameThread).subscribe(subscriber);
+
+		assertEquals(items.stream().map(toText).collect(Collectors.toList()), subscriber.items);
+		assertTrue(subscriber.completed);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void cancelStopsTheItems() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3, 4, 5), null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(2, 0);
+
+		new MappingPublisher<>(source, toText, sameThread).subscribe(subscriber);
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(3);
+
+		assertTrue(source.cancelled);
+		assertEquals(2, subscriber.items.size());
+		assertFalse(subscriber.completed);
+		assertNull(subscriber.error);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void nonPositiveRequestSignalsAnError() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3), null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(0, 0);
+
+		new MappingPublisher<>(source, toText, sameThread).subscribe(subscriber);
+		subscriber.subscription.request(0);
+
+		assertTrue(source.cancelled);
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertTrue(subscriber.items.isEmpty());
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void signalsTheErrorOfTheSourceAfterTheQueuedItems() {
+		final IllegalStateException failure = new IllegalStateException("Source failed");
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2), failure);
+		final ManualExecutor executor = new ManualExecutor();
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(5, 0);
+
+		new MappingPublisher<>(source, toText, executor).subscribe(subscriber);
+		executor.runAll();
+
+		assertEquals(Arrays.asList("item1", "item2"), subscriber.items);
+		assertSame(failure, subscriber.error);
+		assertFalse(subscriber.completed);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void mapperFailureCancelsTheSource() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3), null);
+		final IllegalStateException failure = new IllegalStateException("Mapper failed");
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE, 0);
+
+		new MappingPublisher<Integer, String>(source, i -> {
+			if (i == 2) throw failure;
+			return toText.apply(i);
+		}, sameThread).subscribe(subscriber);
+
+		assertEquals(Collections.singletonList("item1"), subscriber.items);
+		assertSame(failure, subscriber.error);
+		assertTrue(source.cancelled);
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void rejectedConversionSignalsAnError() {
+		final ListPublisher<Integer> source = new ListPublisher<>(Arrays.asList(1, 2, 3), null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE, 0);
+
+		new MappingPublisher<>(source, toText, task -> {
+			throw new RejectedExecutionException("Full");
+		}).subscribe(subscriber);
+
+		assertTrue(subscriber.error instanceof RejectedExecutionException);
+		assertTrue(source.cancelled);
+		assertTrue(subscriber.items.isEmpty());
+		subscriber.assertRules();
+	}
+
+	@Test
+	public void convertsInOrderInOtherThreads() throws InterruptedException {
+		final List<Integer> items = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+		final ListPublisher<Integer> source = new ListPublisher<>(items, null);
+		final RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(100, 100);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			new MappingPublisher<>(source, toText, executor).subscribe(subscriber);
+			assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(items.stream().map(toText).collect(Collectors.toList()), subscriber.items);
+		assertTrue(subscriber.completed);
+		subscriber.assertRules();
+	}
+
+
+	/** Publishes the items as they are requested, and then completes or fails. One subscriber only. */
+	private static class ListPublisher<T> implements Publisher<T> {
+
+		private final List<T> items;
+		private final Throwable error;
+
+		final List<Long> requests = new CopyOnWriteArrayList<>();
+		volatile boolean cancelled;
+
+		ListPublisher(List<T> items, Throwable error) {
+			this.items = items;
+			this.error = error;
+		}
+
+		@Override
+		public void subscribe(Subscriber<? super T> subscriber) {
+			final AtomicLong demand = new AtomicLong();
+			final AtomicInteger pendingEmits = new AtomicInteger();
+			final int[] index = {0};
+			final boolean[] finished = {false};
+
+			// Emits in one thread at a time, also for requests from onNext
+			final Runnable emit = () -> {
+				if (pendingEmits.getAndIncrement() != 0) return;
+				do {
+					while (!cancelled && demand.get() > 0 && index[0] < items.size()) {
+						demand.decrementAndGet();
+						subscriber.onNext(items.get(index[0]++));
+					}
+					if (!cancelled && !finished[0] && index[0] == items.size()) {
+						finished[0] = true;
+						if (error != null) subscriber.onError(error); else subscriber.onComplete();
+					}
+				} while (pendingEmits.decrementAndGet() != 0);
+			};
+
+			subscriber.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+					requests.add(n);
+					demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+					emit.run();
+				}
+
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+			emit.run();
+		}
+	}
+
+	/** Records the signals, requesting some items first and some more after each item. Checks the rules of the signals. */
+	private static class RecordingSubscriber<T> implements Subscriber<T> {
+
+		private final long initialRequest;
+		private final long requestEvery;
+
+		final List<T> items = Collections.synchronizedList(new ArrayList<>());
+		final List<String> violations = new CopyOnWriteArrayList<>();
+		final CountDownLatch terminated = new CountDownLatch(1);
+		volatile Subscription subscription;
+		volatile Throwable error;
+		volatile boolean completed;
+
+		/** Thread in onNext, to check that it's not called concurrently */
+		private final AtomicReference<Thread> inOnNext = new AtomicReference<>();
+
+		/** Requests requestEvery items after receiving that many (none if it's 0) */
+		RecordingSubscriber(long initialRequest, long requestEvery) {
+			this.initialRequest = initialRequest;
+			this.requestEvery = requestEvery;
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+			if (initialRequest > 0) subscription.request(initialRequest);
+		}
+
+		@Override
+		public void onNext(T item) {
+			final Thread previous = inOnNext.getAndSet(Thread.currentThread());
+			if (previous != null && previous != Thread.currentThread()) violations.add("Concurrent onNext");
+			if (terminated.getCount() == 0) violations.add("onNext after the end");
+			items.add(item);
+			if (requestEvery > 0 && items.size() % requestEvery == 0) subscription.request(requestEvery);
+			inOnNext.set(previous);
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			end();
+			error = e;
+		}
+
+		@Override
+		public void onComplete() {
+			end();
+			completed = true;
+		}
+
+		private void end() {
+			if (terminated.getCount() == 0) violations.add("Ended twice");
+			terminated.countDown();
+		}
+
+		void assertRules() {
+			assertEquals(Collections.emptyList(), violations);
+		}
+	}
+
+	/** Runs the tasks only when asked */
+	private static class ManualExecutor implements Executor {
+
+		final List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty()) tasks.remove(0).run();
+		}
+	}
+}